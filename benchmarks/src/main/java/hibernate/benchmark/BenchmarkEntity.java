@@ -0,0 +1,20 @@
+package hibernate.benchmark;
+
+import lombok.*;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+@Entity
+@Data
+@RequiredArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class BenchmarkEntity {
+    @Id
+    @GeneratedValue
+    private Long id;
+    @NonNull
+    private String name;
+    private long counter;
+}
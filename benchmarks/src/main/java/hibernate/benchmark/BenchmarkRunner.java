@@ -0,0 +1,25 @@
+package hibernate.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ *  Takes usual JMH command line options. Unless "-rf" is given, results are written as JSON
+ *  to "-rff" file or jmh-result.json, to compare releases
+ */
+public class BenchmarkRunner {
+    public static final String DEFAULT_RESULT = "jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON)
+                    .result(commandLine.getResult().orElse(DEFAULT_RESULT));
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,89 @@
+package hibernate.benchmark;
+
+import hibernate.impl.HibernateService;
+import hibernate.impl.HibernateSession;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Function;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ *  Service over in-memory H2 seeded with SEED_ROWS entities. Each invocation runs "concurrency" operations
+ *  at once from one Vert.x context (one per session) and waits for all, so score is per batch of operations.
+ *  Virtual threads are opt-in because they need JVM 21+: run with "-p workerMode=virtual-thread"
+ *  (or "-p workerMode=worker-pool,virtual-thread" to compare)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public abstract class HibernateBenchmarkBase {
+    protected static final int SEED_ROWS = 1000;
+
+    @Param({"worker-pool"})
+    protected String workerMode;
+
+    @Param({"1", "16", "64"})
+    protected int concurrency;
+
+    protected Vertx vertx;
+    protected Context context;
+    protected HibernateService service;
+    protected List<HibernateSession> sessions;
+    protected List<Long> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        vertx = Vertx.vertx();
+        context = vertx.getOrCreateContext();
+        JsonObject config = new JsonObject()
+                .put("persistence-unit", "benchmark")
+                .put("worker-mode", workerMode)
+                .put("warm-up", false);
+        service = new HibernateService(vertx, config);
+        service.start().blockingAwait();
+        sessions = Flowable.range(0, concurrency)
+                .concatMapSingle(i -> service.createSession())
+                .toList()
+                .blockingGet();
+        List<BenchmarkEntity> seed = IntStream.range(0, SEED_ROWS)
+                .mapToObj(i -> new BenchmarkEntity("seed-" + i))
+                .collect(Collectors.toList());
+        sessions.get(0).persistAll(seed).blockingLast();
+        ids = seed.stream().map(BenchmarkEntity::getId).sorted().collect(Collectors.toList());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Flowable.fromIterable(sessions).flatMapCompletable(HibernateSession::close).blockingAwait();
+        service.stop().blockingAwait();
+        vertx.close();
+    }
+
+    /**
+     *  Runs operation on every session concurrently from benchmark context and blocks until all complete
+     */
+    protected void await(Function<HibernateSession, Completable> operation) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        context.runOnContext(v -> Flowable.fromIterable(sessions)
+                .flatMapCompletable(operation)
+                .subscribe(() -> done.complete(null), done::completeExceptionally));
+        done.join();
+    }
+
+    protected Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
@@ -0,0 +1,23 @@
+package hibernate.benchmark;
+
+import hibernate.impl.HibernateQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ *  select() of "rows" entities, materialized and then cleared from session
+ */
+public class HibernateSelectBenchmark extends HibernateBenchmarkBase {
+    private static final String SELECT_JPQL = "SELECT e FROM BenchmarkEntity e WHERE e.id <= :maxId";
+
+    @Param({"10", "100", "1000"})
+    private int rows;
+
+    @Benchmark
+    public void select() {
+        Long maxId = ids.get(rows - 1);
+        await(session -> session.select(new HibernateQuery(SELECT_JPQL).put("maxId", maxId), BenchmarkEntity.class)
+                .ignoreElements()
+                .andThen(session.clear()));
+    }
+}
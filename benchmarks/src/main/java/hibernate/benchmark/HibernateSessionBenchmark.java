@@ -0,0 +1,38 @@
+package hibernate.benchmark;
+
+import hibernate.impl.HibernateQuery;
+import hibernate.impl.HibernateSession;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ *  Hot paths of HibernateSession. Sessions are cleared after each operation, so find() always hits database
+ */
+public class HibernateSessionBenchmark extends HibernateBenchmarkBase {
+    private static final String INCREMENT_JPQL = "UPDATE BenchmarkEntity e SET e.counter = e.counter + 1 WHERE e.id = :id";
+
+    @Benchmark
+    public void persistAndFlush() {
+        await(session -> session.persist(new BenchmarkEntity("persisted"))
+                .ignoreElement()
+                .andThen(session.flush())
+                .andThen(session.clear()));
+    }
+
+    @Benchmark
+    public void find() {
+        await(session -> session.find(BenchmarkEntity.class, randomId())
+                .ignoreElement()
+                .andThen(session.clear()));
+    }
+
+    @Benchmark
+    public void execute() {
+        await(session -> session.execute(new HibernateQuery(INCREMENT_JPQL).put("id", randomId()))
+                .ignoreElement());
+    }
+
+    @Benchmark
+    public void createAndClose() {
+        await(session -> service.createSession().flatMapCompletable(HibernateSession::close));
+    }
+}
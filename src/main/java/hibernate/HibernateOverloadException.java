@@ -0,0 +1,12 @@
+package hibernate;
+
+import org.hibernate.HibernateException;
+
+/**
+ *  Thrown when Hibernate worker queue is full and operation was rejected without execution
+ */
+public class HibernateOverloadException extends HibernateException {
+    public HibernateOverloadException(String message) {
+        super(message);
+    }
+}
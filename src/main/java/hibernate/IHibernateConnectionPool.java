@@ -0,0 +1,21 @@
+package hibernate;
+
+import io.vertx.core.json.JsonObject;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+
+/**
+ *  Pluggable JDBC connection pool, passed to Hibernate as ConnectionProvider instance.
+ *  Implementation is chosen by "connection-pool.provider" config key (class name with public no-arg constructor)
+ */
+public interface IHibernateConnectionPool extends ConnectionProvider {
+    /**
+     *  Called by service before EntityManagerFactory is built.
+     *  defaultSize - size derived from worker pool, used unless "max-size" is set in pool config
+     */
+    void init(JsonObject poolConfig, int defaultSize);
+
+    /**
+     *  Returns "active", "idle", "total", "pending" connection counts and "acquire-time" histogram
+     */
+    JsonObject getMetrics();
+}
@@ -15,4 +15,27 @@ public interface IHibernateQuery {
     HibernateQuery setJpql(String jpql);
 
     String getJpql();
+
+    /**
+     *  Name of query registered in HibernateService (see HibernateQuery.named()), null for plain JPQL query
+     */
+    String getName();
+
+    boolean isNamed();
+
+    /**
+     *  Caches select() result for cacheTtl ms in service query cache (see "query-cache-max-rows" config key), 0 - no caching
+     *  Projection results are cached in any session. Entity results are cached only in read-only sessions
+     *  (hits are detached copies there), so other sessions always get entities managed by themselves
+     */
+    HibernateQuery setCacheTtl(long cacheTtl);
+
+    long getCacheTtl();
+
+    /**
+     *  Query timeout in ms, passed to JDBC as query hint (rounded up to seconds), 0 - session default (see "query-timeout" config key)
+     */
+    HibernateQuery setTimeout(long timeout);
+
+    long getTimeout();
 }
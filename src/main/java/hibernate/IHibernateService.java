@@ -1,8 +1,15 @@
 package hibernate;
 
+import hibernate.impl.HibernateQuery;
+import hibernate.impl.HibernateService;
 import hibernate.impl.HibernateSession;
+import hibernate.impl.HibernateStatelessSession;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
+import io.vertx.core.json.JsonObject;
+
+import java.util.function.Function;
 
 public interface IHibernateService {
     /**
@@ -15,5 +22,99 @@ public interface IHibernateService {
      */
     Completable stop();
 
+    /**
+     *  registerNamedQuery() - call it before start(). Queries are validated and precompiled on start,
+     *  then SELECT queries are run once with warmUpParams (see "warm-up" config key).
+     *  Use HibernateQuery.named(name) to refer to them. Also can be set by "named-queries" config object:
+     *  {"name": "jpql"} or {"name": {"jpql": "...", "warm-up-params": {...}}}
+     */
+
+    HibernateService registerNamedQuery(String name, String jpql);
+
+    HibernateService registerNamedQuery(String name, String jpql, JsonObject warmUpParams);
+
     Single<HibernateSession> createSession();
+
+    /**
+     *  Session with replicaReads runs find(), findAll(), select() and selectPages() on read replicas ("read-persistence-units"
+     *  config key), outside of user transaction. If "read-your-writes" is true (default), session reads from primary
+     *  after its first write. Other operations always use primary
+     */
+    Single<HibernateSession> createSession(boolean replicaReads);
+
+    /**
+     *  Session that only reads, from replicas if they are configured. Loaded entities are read-only (no dirty-check
+     *  snapshots), nothing is flushed, close() doesn't start transaction. Writes, transactions and units of work fail
+     */
+    Single<HibernateSession> createReadOnlySession();
+
+    /**
+     *  Session on shard chosen by shardKey (see "shard-persistence-units" and IHibernateShardStrategy).
+     *  Shard 0 is "persistence-unit", entity and query caches serve only it
+     */
+    Single<HibernateSession> createShardSession(Object shardKey);
+
+    /**
+     *  Runs select() on all shards in parallel. If query has ORDER BY ("alias.attribute [ASC|DESC]" keys of selected
+     *  entity, or single key for scalar rows), sorted shard results are merged in that order, otherwise as shards respond
+     */
+    <T> Flowable<T> scatterSelect(HibernateQuery jpqlQuery, Class<T> clazz);
+
+    int getShardCount();
+
+    /**
+     *  borrowSession(), release() - reuse sessions from pool (see "session-pool" config key) instead of create and close.
+     *  Released session is flushed and cleared, unfinished user transaction is rolled back
+     */
+
+    Single<HibernateSession> borrowSession();
+
+    Completable release(HibernateSession session);
+
+    /**
+     *  Runs work as unit of work (see IHibernateSession.inUnitOfWork()) on pooled session, released after
+     */
+
+    <R> Single<R> transact(Function<IHibernateSyncSession, R> work);
+
+    <R> Single<R> transact(Function<IHibernateSyncSession, R> work, int maxRetries);
+
+    /**
+     *  Session without first-level cache and dirty checking, for bulk inserts and append-only tables
+     */
+    Single<HibernateStatelessSession> createStatelessSession();
+
+    /**
+     *  Returns "size", "hits", "misses" and "evictions" of find() entity cache (see "entity-cache-max-size" config key)
+     */
+    JsonObject getEntityCacheStatistics();
+
+    /**
+     *  Returns "size", "rows", "hits", "misses" and "evictions" of select() result cache (see "query-cache-max-rows" config key)
+     */
+    JsonObject getQueryCacheStatistics();
+
+    /**
+     *  Returns metrics of connection pool (see IHibernateConnectionPool), empty if Hibernate built-in pool is used
+     */
+    JsonObject getConnectionPoolMetrics();
+
+    /**
+     *  Returns Hibernate statistics: totals, entity loads and fetches (N+1 shows as fetches growing with loads),
+     *  cache hits and per query "executions", "rows", "avg-time", "max-time" (ms). Empty unless "statistics" config key is true.
+     *  Queries slower than "slow-query-threshold" ms are logged (see HibernateSlowQueryLog)
+     */
+    JsonObject getStatistics();
+
+    /**
+     *  Returns latency of worker tasks by operation and by named query: "wait" is time in worker queue,
+     *  "execution" is time on worker (see HibernateMetrics). Published to "metrics-address" config key if set
+     */
+    JsonObject metrics();
+
+    /**
+     *  Returns startup phases (ms): per persistence unit "scanning", "metadata", "session-factory", "first-connection",
+     *  then "named-queries", "warm-up" and "total". See HibernateBootstrap for "metadata-cache-file" and "defer-schema-validation"
+     */
+    JsonObject getStartupTimings();
 }
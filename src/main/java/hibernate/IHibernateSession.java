@@ -1,10 +1,20 @@
 package hibernate;
 
+import hibernate.impl.HibernateExporter;
 import hibernate.impl.HibernateQuery;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.buffer.Buffer;
+import io.vertx.reactivex.core.streams.WriteStream;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  *  Wraps methods EntityManager to async RxJava2 results
@@ -32,15 +42,79 @@ public interface IHibernateSession {
     <T> Single<T> refresh(T model);
 
     /**
-     *  find(), select() - return empty rx-objects if query result is empty
+     *  persistAll(), mergeAll() - write entities by batches, one transaction and one worker hop per batch.
+     *  Session is flushed and cleared after every batch. Emit count of entities written so far after each batch
+     */
+
+    <T> Flowable<Long> persistAll(Iterable<T> models);
+
+    <T> Flowable<Long> persistAll(Flowable<T> models, int batchSize);
+
+    <T> Flowable<Long> mergeAll(Iterable<T> models);
+
+    <T> Flowable<Long> mergeAll(Flowable<T> models, int batchSize);
+
+    /**
+     *  find(), select() - return empty rx-objects if query result is empty.
+     *  find() returns entity of session persistence context if it is loaded there. Read-only session with entity cache
+     *  enabled (see "entity-cache-max-size" config key) checks service cache first and returns detached copy on calling thread
+     *  without worker hop, then coalesced or plain load runs on worker
      */
 
     <T> Maybe<T> find(Class<T> clazz, Long id);
 
+    /**
+     *  Loads entities by multi-id query in batches of "multi-load-batch-size", missing ids are skipped
+     */
+    <T> Observable<T> findAll(Class<T> clazz, Collection<Long> ids);
+
+    /**
+     *  select(), selectJson*(), selectPages() and execute() can be disposed: query not started yet is skipped,
+     *  running query gets its JDBC statement cancelled. Only the last statement registered in session is cancelled,
+     *  so query that runs secondary statements (by example lazy or batch fetches) may be cancelled late or not at all.
+     *  Statement cancelled by timeout (see HibernateQuery.setTimeout() and "query-timeout" config key) or disposal
+     *  fails with QueryTimeoutException
+     */
     <T> Observable<T> select(HibernateQuery jpqlQuery, Class<T> clazz);
 
     <T> Observable<T> select(String jpqlString, Class<T> clazz);
 
+    /**
+     *  selectJson(), selectJsonArray(), selectJsonBuffer() - run scalar projection query (by example
+     *  "SELECT m.id AS id, m.name AS name FROM Mock m") and build JSON rows on worker, keyed by select aliases
+     *  (or positions if there is no alias). Nothing enters persistence context, selecting entities is rejected.
+     *  Temporal values are written as ISO strings, BigDecimal and BigInteger as strings, enums by name.
+     *  selectJsonBuffer() returns encoded JSON array ready to write
+     */
+
+    Observable<JsonObject> selectJson(HibernateQuery jpqlQuery);
+
+    Single<JsonArray> selectJsonArray(HibernateQuery jpqlQuery);
+
+    Single<Buffer> selectJsonBuffer(HibernateQuery jpqlQuery);
+
+    /**
+     *  Scrolls result on worker by fetchSize chunks as downstream requests them.
+     *  Delivered entities are detached from session, cursor is closed on complete, error or cancel
+     */
+    <T> Flowable<T> selectStream(HibernateQuery jpqlQuery, Class<T> clazz, int fetchSize);
+
+    /**
+     *  Keyset pagination: every page is a separate short query "... WHERE key > :lastKey ORDER BY key" limited by pageSize.
+     *  keyPath is the key with alias (by example "m.id" for query "SELECT m FROM Mock m WHERE m.name = :name"),
+     *  only "alias.attribute" of selected entity is supported (not "m.owner.id"), clazz must be an entity.
+     *  Query must not contain its own ORDER BY. Page entities are detached after loading
+     */
+    <T> Flowable<List<T>> selectPages(HibernateQuery jpqlQuery, Class<T> clazz, String keyPath, int pageSize);
+
+    /**
+     *  Streams scalar projection query (as for selectJson()) to stream as NDJSON or CSV, returns rows count.
+     *  Result is scrolled and encoded on worker into 64 KB chunks, next chunk is read only when stream
+     *  is not writeQueueFull() (stream drain and exception handlers are replaced while waiting), so memory use is constant.
+     *  Cursor is closed on complete, error or dispose
+     */
+    Single<Long> exportTo(HibernateQuery jpqlQuery, WriteStream<Buffer> stream, HibernateExporter.Format format);
+
     /**
      *  Returns affected rows count
      */
@@ -56,6 +130,17 @@ public interface IHibernateSession {
 
     Completable rollbackTransaction();
 
+    /**
+     *  inUnitOfWork() - runs whole work synchronously in one worker hop and one transaction, returns its non-null result.
+     *  Inside user transaction (see beginTransaction()) work joins it and is never retried. Otherwise work failed by
+     *  optimistic lock, lock acquisition or deadlock (SQL states 40001, 40P01) is rolled back and run again up to maxRetries
+     *  times with new EntityManager, so it must not depend on entities loaded before retry
+     */
+
+    <R> Single<R> inUnitOfWork(Function<IHibernateSyncSession, R> work);
+
+    <R> Single<R> inUnitOfWork(Function<IHibernateSyncSession, R> work, int maxRetries);
+
     /**
      *  Returns true if session hasn't removed from service and EntityManager is open (sync and async relevantly)
      */
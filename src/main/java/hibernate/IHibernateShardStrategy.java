@@ -0,0 +1,20 @@
+package hibernate;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ *  Pluggable choice of shard by shard key (see HibernateService.createShardSession()).
+ *  Implementation is chosen by "shard-strategy.provider" config key: "hash" (default), "range"
+ *  or class name with public no-arg constructor
+ */
+public interface IHibernateShardStrategy {
+    /**
+     *  Called by service on start. shardCount - count of shard persistence units, including primary
+     */
+    void init(JsonObject strategyConfig, int shardCount);
+
+    /**
+     *  Returns shard index from 0 (primary persistence unit) to shardCount - 1
+     */
+    int shardOf(Object shardKey);
+}
@@ -0,0 +1,48 @@
+package hibernate;
+
+import hibernate.impl.HibernateQuery;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+
+/**
+ *  Wraps methods StatelessSession to async RxJava2 results: no first-level cache, no dirty checking, no cascades
+ */
+public interface IHibernateStatelessSession {
+    /**
+     *  Call it after using session to destroy
+     */
+    Completable close();
+
+    /**
+     *  insert(), update(), delete() - executed immediately in own transaction, return arg
+     */
+
+    <T> Single<T> insert(T model);
+
+    <T> Single<T> update(T model);
+
+    <T> Single<T> delete(T model);
+
+    /**
+     *  Inserts entities by JDBC batches, one transaction and one worker hop per batch.
+     *  Emits count of entities inserted so far after each batch
+     */
+    <T> Flowable<Long> insertAll(Flowable<T> models, int batchSize);
+
+    /**
+     *  get() - returns empty Maybe if entity is missing
+     */
+    <T> Maybe<T> get(Class<T> clazz, Long id);
+
+    /**
+     *  Scrolls result on worker by fetchSize chunks as downstream requests them, cursor is closed on complete, error or cancel
+     */
+    <T> Flowable<T> selectStream(HibernateQuery jpqlQuery, Class<T> clazz, int fetchSize);
+
+    /**
+     *  Returns true if session hasn't removed from service and StatelessSession is open
+     */
+    boolean isActiveSync();
+}
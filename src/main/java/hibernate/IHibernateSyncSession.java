@@ -0,0 +1,37 @@
+package hibernate;
+
+import hibernate.impl.HibernateQuery;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ *  Blocking view of HibernateSession for unit of work (see IHibernateSession.inUnitOfWork()).
+ *  Valid only inside unit of work, all calls run on its worker thread and in its transaction
+ */
+public interface IHibernateSyncSession {
+    <T> T persist(T model);
+
+    /**
+     *  Returns managed copy of model
+     */
+    <T> T merge(T model);
+
+    <T> T remove(T model);
+
+    <T> T refresh(T model);
+
+    /**
+     *  find(), select() - read database in transaction, caches of service are bypassed. find() returns null if not found
+     */
+
+    <T> T find(Class<T> clazz, Long id);
+
+    <T> List<T> select(HibernateQuery jpqlQuery, Class<T> clazz);
+
+    int execute(HibernateQuery jpqlQuery);
+
+    void flush();
+
+    EntityManager getEntityManager();
+}
@@ -0,0 +1,273 @@
+package hibernate.impl;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import lombok.Getter;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.archive.scan.internal.StandardScanner;
+import org.hibernate.boot.archive.scan.spi.ScanEnvironment;
+import org.hibernate.boot.archive.scan.spi.ScanOptions;
+import org.hibernate.boot.archive.scan.spi.ScanParameters;
+import org.hibernate.boot.archive.scan.spi.ScanResult;
+import org.hibernate.boot.archive.scan.spi.Scanner;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.internal.ParsedPersistenceXmlDescriptor;
+import org.hibernate.jpa.boot.internal.PersistenceXmlParser;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaValidator;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ *  Builds EntityManagerFactory in timed phases: "scanning" (persistence.xml parsing and classpath scan),
+ *  "metadata" (binding of annotations and mappings), "session-factory" (persisters, named queries)
+ *  and "first-connection" (ms, see HibernateService.getStartupTimings()).
+ *  If "metadata-cache-file" is set, entity classes found by classpath scanning are saved there, keyed by hash of unit
+ *  properties and persistence root modification time; repeat boots with same key list classes instead of scanning.
+ *  Auto-applied converters must be listed in persistence.xml then. Key of jar root costs one file stat, key of classes
+ *  directory (IDE or exploded runs) walks whole directory for modification times on every boot, this is still
+ *  much cheaper than scanning, which opens every class file
+ *  If "defer-schema-validation" is true, hbm2ddl "validate" runs in background after start (see validateSchemas())
+ */
+class HibernateBootstrap {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HibernateBootstrap.class);
+    private static final String VALIDATE = "validate";
+
+    private final Path cacheFile;
+    private final boolean deferValidation;
+    private final JsonObject cache;
+    private final List<Metadata> deferredValidations = new ArrayList<>();
+    private final List<SessionFactoryImplementor> deferredFactories = new ArrayList<>();
+    @Getter
+    private final JsonObject timings = new JsonObject();
+    private boolean cacheChanged;
+
+    HibernateBootstrap(JsonObject config) {
+        String cachePath = config.getString("metadata-cache-file");
+        this.cacheFile = cachePath == null ? null : Paths.get(cachePath);
+        this.deferValidation = config.getBoolean("defer-schema-validation", false);
+        this.cache = loadCache();
+    }
+
+    EntityManagerFactory build(String persistenceUnit, Map<String, Object> properties) {
+        long start = System.nanoTime();
+        ParsedPersistenceXmlDescriptor descriptor = PersistenceXmlParser.locatePersistenceUnits(properties).stream()
+                .filter(unit -> persistenceUnit.equals(unit.getName()))
+                .findFirst()
+                .orElseThrow(() -> new HibernateException("HS: Persistence unit not found: " + persistenceUnit));
+        String key = cacheFile == null ? null : cacheKey(descriptor, properties);
+        JsonObject cached = key == null ? null : cache.getJsonObject(persistenceUnit);
+        boolean cacheHit = cached != null && key.equals(cached.getString("key"));
+        if (cacheHit) {
+            cached.getJsonArray("classes").forEach(className -> {
+                if (!descriptor.getManagedClassNames().contains(className)) {
+                    descriptor.addClasses(String.valueOf(className));
+                }
+            });
+            descriptor.setExcludeUnlistedClasses(true);
+        }
+        boolean validate = deferValidation && VALIDATE.equals(setting(descriptor, properties, AvailableSettings.HBM2DDL_AUTO));
+        if (validate) {
+            properties.put(AvailableSettings.HBM2DDL_AUTO, "none");
+        }
+        TimedScanner scanner = null;
+        if (setting(descriptor, properties, AvailableSettings.SCANNER) == null
+                && setting(descriptor, properties, AvailableSettings.SCANNER_DEPRECATED) == null
+                && setting(descriptor, properties, AvailableSettings.SCANNER_ARCHIVE_INTERPRETER) == null) {
+            scanner = new TimedScanner();
+            properties.put(AvailableSettings.SCANNER, scanner);
+        }
+        MetadataProbe probe = new MetadataProbe();
+        properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER, probe);
+        long parsed = System.nanoTime();
+
+        EntityManagerFactory factory = new EntityManagerFactoryBuilderImpl(descriptor, properties).build();
+        long built = System.nanoTime();
+        Metadata metadata = probe.getMetadata();
+
+        EntityManager em = factory.createEntityManager();
+        try {
+            em.unwrap(Session.class).doWork(connection -> { });
+        } finally {
+            em.close();
+        }
+        long scanned = scanner == null ? 0 : scanner.getNanos();
+        timings.put(persistenceUnit, new JsonObject()
+                .put("scanning", TimeUnit.NANOSECONDS.toMillis(parsed - start + scanned))
+                .put("metadata", TimeUnit.NANOSECONDS.toMillis(probe.getCompletedAt() - parsed - scanned))
+                .put("session-factory", TimeUnit.NANOSECONDS.toMillis(built - probe.getCompletedAt()))
+                .put("first-connection", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - built)));
+
+        if (key != null && !cacheHit) {
+            JsonArray classes = new JsonArray();
+            metadata.getEntityBindings().stream().map(PersistentClass::getClassName).sorted().forEach(classes::add);
+            cache.put(persistenceUnit, new JsonObject().put("key", key).put("classes", classes));
+            cacheChanged = true;
+        }
+        if (validate) {
+            deferredValidations.add(metadata);
+            deferredFactories.add(factory.unwrap(SessionFactoryImplementor.class));
+        }
+        return factory;
+    }
+
+    /**
+     *  Writes cache file if any unit was scanned, failures are only logged
+     */
+    void saveCache() {
+        if (cacheFile == null || !cacheChanged) {
+            return;
+        }
+        try {
+            Files.write(cacheFile, cache.encodePrettily().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOGGER.warn("HS: Can't write metadata cache: " + cacheFile + ": " + e);
+        }
+    }
+
+    /**
+     *  Runs deferred hbm2ddl validation, call it on worker. Failures are logged, service keeps running
+     */
+    void validateSchemas() {
+        for (int i = 0; i < deferredValidations.size(); i++) {
+            try {
+                new SchemaValidator().validate(deferredValidations.get(i), deferredFactories.get(i).getServiceRegistry());
+            } catch (RuntimeException e) {
+                LOGGER.error("HS: Schema validation failed: " + e.getMessage());
+            }
+        }
+        deferredValidations.clear();
+        deferredFactories.clear();
+    }
+
+    private JsonObject loadCache() {
+        if (cacheFile == null || !Files.exists(cacheFile)) {
+            return new JsonObject();
+        }
+        try {
+            return new JsonObject(new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("HS: Metadata cache is ignored: " + cacheFile + ": " + e);
+            return new JsonObject();
+        }
+    }
+
+    private String cacheKey(ParsedPersistenceXmlDescriptor descriptor, Map<String, Object> properties) {
+        StringBuilder source = new StringBuilder(descriptor.getName())
+                .append('|').append(descriptor.getManagedClassNames())
+                .append('|').append(new TreeMap<>(descriptor.getProperties()));
+        new TreeMap<>(properties).forEach((name, value) -> {
+            if (value instanceof String) {
+                source.append('|').append(name).append('=').append(value);
+            }
+        });
+        URL root = descriptor.getPersistenceUnitRootUrl();
+        source.append('|').append(root).append('@').append(lastModified(root));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(source.toString().getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new HibernateException(e);
+        }
+    }
+
+    /**
+     *  Latest modification time of jar file or of any file in classes directory (directory walk), 0 if unknown
+     */
+    private long lastModified(URL root) {
+        if (root == null || !"file".equals(root.getProtocol())) {
+            return 0;
+        }
+        try {
+            File file = new File(root.toURI());
+            if (!file.isDirectory()) {
+                return file.lastModified();
+            }
+            try (Stream<Path> files = Files.walk(file.toPath())) {
+                return files.mapToLong(path -> path.toFile().lastModified()).max().orElse(0);
+            }
+        } catch (URISyntaxException | IOException e) {
+            return 0;
+        }
+    }
+
+    private static String setting(ParsedPersistenceXmlDescriptor descriptor, Map<String, Object> properties, String name) {
+        Object value = properties.get(name);
+        return value != null ? String.valueOf(value) : descriptor.getProperties().getProperty(name);
+    }
+
+    /**
+     *  Default StandardScanner that sums its time, scanning runs inside EntityManagerFactoryBuilderImpl constructor
+     */
+    private static class TimedScanner implements Scanner {
+        private final Scanner delegate = new StandardScanner();
+        @Getter
+        private long nanos;
+
+        @Override
+        public ScanResult scan(ScanEnvironment environment, ScanOptions options, ScanParameters parameters) {
+            long start = System.nanoTime();
+            try {
+                return delegate.scan(environment, options, parameters);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     *  Integrators are called by SessionFactory constructor with completed metadata, that is the end of "metadata" phase
+     */
+    private static class MetadataProbe implements IntegratorProvider, Integrator {
+        @Getter
+        private Metadata metadata;
+        @Getter
+        private long completedAt;
+
+        @Override
+        public List<Integrator> getIntegrators() {
+            return Collections.singletonList(this);
+        }
+
+        @Override
+        public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+            this.metadata = metadata;
+            this.completedAt = System.nanoTime();
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        }
+    }
+}
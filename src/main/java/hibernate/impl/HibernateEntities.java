@@ -0,0 +1,125 @@
+package hibernate.impl;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.Metamodel;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ *  Metamodel helpers: detached state capture/restore, entity types referenced by JPQL, attribute access and ordering
+ */
+final class HibernateEntities {
+    private static final Pattern ENTITY_PATTERN = Pattern.compile("(?i)\\b(?:from|join|update)\\s+([\\w.$]+)");
+    private static final Pattern ORDER_BY_PATTERN = Pattern.compile("(?i)\\border\\s+by\\s+(.+)$");
+    private static final Pattern ORDER_KEY_PATTERN = Pattern.compile("(?i)^\\s*(?:\\w+\\.)?(\\w+)(?:\\s+(asc|desc))?\\s*$");
+
+    private HibernateEntities() {
+    }
+
+    static boolean isEntity(SessionFactoryImplementor sessionFactory, Class<?> clazz) {
+        return sessionFactory.getMetamodel().entityPersisters().containsKey(clazz.getName());
+    }
+
+    static Object[] capture(SessionFactoryImplementor sessionFactory, Object entity) {
+        return sessionFactory.getMetamodel().entityPersister(entity.getClass()).getPropertyValues(entity);
+    }
+
+    /**
+     *  Builds new detached instance, associations are shared references
+     */
+    static <T> T restore(SessionFactoryImplementor sessionFactory, Class<T> clazz, Object id, Object[] state) {
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(clazz);
+        Object entity = persister.instantiate((Serializable) id, null);
+        persister.setPropertyValues(entity, state.clone());
+        return clazz.cast(entity);
+    }
+
+    static Object getIdentifier(SessionFactoryImplementor sessionFactory, Object entity) {
+        return sessionFactory.getPersistenceUnitUtil().getIdentifier(entity);
+    }
+
+    /**
+     *  Entity classes after FROM, JOIN and UPDATE. Returns null if any of them is not resolved (by example path join)
+     */
+    static Set<Class<?>> typesOf(SessionFactoryImplementor sessionFactory, String jpql) {
+        Set<Class<?>> types = new HashSet<>();
+        Matcher matcher = ENTITY_PATTERN.matcher(jpql);
+        while (matcher.find()) {
+            Optional<Class<?>> type = resolve(sessionFactory, matcher.group(1));
+            if (!type.isPresent()) {
+                return null;
+            }
+            types.add(type.get());
+        }
+        return types.isEmpty() ? null : types;
+    }
+
+    static Object readAttribute(Metamodel metamodel, Class<?> clazz, Object entity, String attribute) {
+        Member member = metamodel.entity(clazz).getAttribute(attribute).getJavaMember();
+        try {
+            if (member instanceof Field) {
+                Field field = (Field) member;
+                field.setAccessible(true);
+                return field.get(entity);
+            }
+            Method getter = (Method) member;
+            getter.setAccessible(true);
+            return getter.invoke(entity);
+        } catch (ReflectiveOperationException e) {
+            throw new HibernateException("HS: Can't read key attribute: " + attribute, e);
+        }
+    }
+
+    /**
+     *  Comparator of rows by ORDER BY of JPQL, null if there is no ORDER BY. Keys are "alias.attribute [ASC|DESC]"
+     *  of selected entity, or single key for scalar rows. Nulls go first in ascending order
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Comparator<T> orderOf(Metamodel metamodel, Class<T> clazz, String jpql) {
+        Matcher orderBy = ORDER_BY_PATTERN.matcher(jpql);
+        if (!orderBy.find()) {
+            return null;
+        }
+        String[] keys = orderBy.group(1).split(",");
+        boolean entity = metamodel.getEntities().stream().anyMatch(type -> type.getJavaType().equals(clazz));
+        if (!entity && keys.length > 1) {
+            throw new HibernateException("HS: Scalar rows can be merged only by single ORDER BY key: " + jpql);
+        }
+        Comparator<T> order = null;
+        for (String key : keys) {
+            Matcher keyMatcher = ORDER_KEY_PATTERN.matcher(key);
+            if (!keyMatcher.matches()) {
+                throw new HibernateException("HS: Can't merge rows by ORDER BY key: " + key.trim());
+            }
+            String attribute = keyMatcher.group(1);
+            Comparator<Comparable<Object>> values = Comparator.nullsFirst(Comparator.naturalOrder());
+            if ("desc".equalsIgnoreCase(keyMatcher.group(2))) {
+                values = values.reversed();
+            }
+            Comparator<T> keyOrder = Comparator.comparing(row -> (Comparable<Object>) (entity
+                    ? readAttribute(metamodel, clazz, row, attribute)
+                    : row), values);
+            order = order == null ? keyOrder : order.thenComparing(keyOrder);
+        }
+        return order;
+    }
+
+    private static Optional<Class<?>> resolve(SessionFactoryImplementor sessionFactory, String entityName) {
+        return sessionFactory.getMetamodel().getEntities().stream()
+                .filter(type -> type.getName().equals(entityName) || type.getJavaType().getName().equals(entityName))
+                .<Class<?>>map(EntityType::getJavaType)
+                .findFirst();
+    }
+}
@@ -0,0 +1,188 @@
+package hibernate.impl;
+
+import io.vertx.core.json.JsonObject;
+import lombok.Value;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  Service-wide LRU cache of detached entity state for find(), bounded by size and TTL.
+ *  Stores property values, every hit builds new detached instance (associations are shared references).
+ *  Entries are invalidated on entity update/delete flush in any session and again after its commit (readers of other
+ *  connections see old rows until then), and on bulk execute() by entity type; loads started before invalidation
+ *  are not cached (see stamp()). Serves only read-only sessions (see HibernateSession.find()).
+ *  Config keys: "entity-cache-max-size" (0 - disabled), "entity-cache-ttl" (ms)
+ */
+public class HibernateEntityCache implements PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+    public static final int DEFAULT_MAX_SIZE = 0;
+    public static final long DEFAULT_TTL = 60_000L;
+
+    private final int maxSize;
+    private final long ttl;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Map<Key, CachedState> entries;
+    private final HibernateGenerations generations = new HibernateGenerations();
+    private transient SessionFactoryImplementor sessionFactory;
+
+    public HibernateEntityCache(JsonObject config) {
+        this.maxSize = config.getInteger("entity-cache-max-size", DEFAULT_MAX_SIZE);
+        this.ttl = config.getLong("entity-cache-ttl", DEFAULT_TTL);
+        this.entries = new LinkedHashMap<Key, CachedState>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedState> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     *  Call it after EntityManagerFactory is built
+     */
+    protected void bind(SessionFactoryImplementor sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     *  Returns new detached instance or null on miss
+     */
+    public <T> T get(Class<T> clazz, Object id) {
+        Key key = new Key(clazz, id);
+        CachedState entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.getExpireAt() < System.currentTimeMillis()) {
+                entries.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return HibernateEntities.restore(sessionFactory, clazz, id, entry.getState());
+    }
+
+    /**
+     *  Take it before loading entity and pass to put()
+     */
+    public long stamp(Class<?> clazz) {
+        return generations.stamp(clazz);
+    }
+
+    /**
+     *  Entity is skipped if its type was invalidated after stamp was taken, because loaded state may be already stale
+     */
+    public void put(Class<?> clazz, Object id, Object entity, long stamp) {
+        if (entity == null || stamp != generations.stamp(clazz)) {
+            return;
+        }
+        Object[] state = HibernateEntities.capture(sessionFactory, entity);
+        synchronized (entries) {
+            if (stamp == generations.stamp(clazz)) {
+                entries.put(new Key(clazz, id), new CachedState(state, System.currentTimeMillis() + ttl));
+            }
+        }
+    }
+
+    public void invalidate(Class<?> clazz, Object id) {
+        synchronized (entries) {
+            generations.invalidate(clazz);
+            entries.remove(new Key(clazz, id));
+        }
+    }
+
+    public void invalidateAll(Class<?> clazz) {
+        synchronized (entries) {
+            generations.invalidate(clazz);
+            entries.keySet().removeIf(key -> key.getClazz().equals(clazz));
+        }
+    }
+
+    /**
+     *  Invalidates entity types touched by bulk UPDATE/DELETE JPQL, unknown entity invalidates everything
+     */
+    public void invalidateByJpql(String jpql) {
+        Set<Class<?>> types = HibernateEntities.typesOf(sessionFactory, jpql);
+        if (types == null) {
+            synchronized (entries) {
+                generations.invalidateAll();
+                entries.clear();
+            }
+        } else {
+            types.forEach(this::invalidateAll);
+        }
+    }
+
+    public JsonObject getStatistics() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new JsonObject()
+                .put("size", size)
+                .put("hits", hits.sum())
+                .put("misses", misses.sum())
+                .put("evictions", evictions.sum());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        invalidate(event.getPersister().getMappedClass(), event.getId());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        invalidate(event.getPersister().getMappedClass(), event.getId());
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        invalidate(event.getPersister().getMappedClass(), event.getId());
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        invalidate(event.getPersister().getMappedClass(), event.getId());
+    }
+
+    /**
+     *  Registered for both flush (POST_UPDATE, POST_DELETE) and commit (POST_COMMIT_UPDATE, POST_COMMIT_DELETE) events
+     */
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return true;
+    }
+
+    @Value
+    private static class Key {
+        Class<?> clazz;
+        Object id;
+    }
+
+    @Value
+    private static class CachedState {
+        Object[] state;
+        long expireAt;
+    }
+}
@@ -0,0 +1,107 @@
+package hibernate.impl;
+
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.reactivex.core.eventbus.Message;
+import io.vertx.reactivex.core.eventbus.MessageConsumer;
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+
+/**
+ *  Serves HibernateMessage requests on "event-bus-address" with sessions borrowed from service pool,
+ *  so verticles of the process share one EntityManagerFactory, connection pool and caches (see HibernateEventBusSession).
+ *  Writes are flushed before reply, failures are replied with code 500 and message
+ */
+public class HibernateEventBusEndpoint {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HibernateEventBusEndpoint.class);
+    public static final int FAILURE_CODE = 500;
+
+    private final HibernateService service;
+    private final String address;
+    private MessageConsumer<HibernateMessage> consumer;
+
+    public HibernateEventBusEndpoint(HibernateService service, String address) {
+        this.service = service;
+        this.address = address;
+    }
+
+    public void start() {
+        HibernateMessageCodec.register(service.getVertx().getDelegate(), service.getEntityManagerFactory().getMetamodel());
+        consumer = service.getVertx().eventBus().consumer(address, this::handle);
+    }
+
+    public void stop() {
+        if (consumer != null) {
+            consumer.unregister();
+            consumer = null;
+        }
+    }
+
+    private void handle(Message<HibernateMessage> message) {
+        HibernateMessage request = message.body();
+        service.borrowSession()
+                .flatMapMaybe(session -> dispatch(session, request)
+                        .flatMap(result -> service.release(session).andThen(Maybe.just(result)))
+                        .switchIfEmpty(service.release(session).andThen(Maybe.empty()))
+                        .onErrorResumeNext((Throwable e) -> service.release(session).onErrorComplete().andThen(Maybe.error(e))))
+                .subscribe(
+                        result -> message.reply(HibernateMessage.reply(result)),
+                        e -> {
+                            LOGGER.debug("HS: Event bus request failed: " + request.getAction() + ": " + e);
+                            message.fail(FAILURE_CODE, String.valueOf(e.getMessage()));
+                        },
+                        () -> message.reply(HibernateMessage.reply(null)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Maybe<Object> dispatch(HibernateSession session, HibernateMessage request) {
+        switch (request.getAction()) {
+            case FIND:
+                return session.find((Class<Object>) request.resolveEntityClass(), request.getId());
+            case FIND_ALL:
+                return session.findAll(request.resolveEntityClass(), request.getIds()).toList().map(Object.class::cast).toMaybe();
+            case SELECT:
+                return session.select(request.getQuery(), request.resolveEntityClass()).toList().map(Object.class::cast).toMaybe();
+            case SELECT_JSON:
+                return session.selectJsonArray(request.getQuery()).map(Object.class::cast).toMaybe();
+            case EXECUTE:
+                return session.execute(request.getQuery()).map(Object.class::cast).toMaybe();
+            case PERSIST:
+                return flushed(session, session.persist(request.getModel()));
+            case MERGE:
+                return flushed(session, session.merge(request.getModel()));
+            case REMOVE:
+                return managed(session, request.getModel()).flatMap(model -> flushed(session, session.remove(model)));
+            case REFRESH:
+                return managed(session, request.getModel()).flatMap(model -> session.refresh(model).toMaybe());
+            case PERSIST_ALL:
+                return session.persistAll(request.getModels()).last(0L).map(Object.class::cast).toMaybe();
+            case MERGE_ALL:
+                return session.mergeAll(request.getModels()).last(0L).map(Object.class::cast).toMaybe();
+            default:
+                return Maybe.error(new IllegalArgumentException("HS: Unknown action: " + request.getAction()));
+        }
+    }
+
+    /**
+     *  Request model is always detached from borrowed session, so remove and refresh work on instance loaded by its id
+     */
+    @SuppressWarnings("unchecked")
+    private Maybe<Object> managed(HibernateSession session, Object model) {
+        if (model == null) {
+            return Maybe.error(new HibernateException("HS: Model is required"));
+        }
+        Object id = service.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(model);
+        if (!(id instanceof Long)) {
+            return Maybe.error(new HibernateException("HS: Entity id must be Long: " + model.getClass().getName()));
+        }
+        return session.find((Class<Object>) Hibernate.getClass(model), (Long) id)
+                .switchIfEmpty(Maybe.error(new HibernateException("HS: Entity not found: " + model.getClass().getName() + "#" + id)));
+    }
+
+    private Maybe<Object> flushed(HibernateSession session, Single<Object> write) {
+        return write.flatMap(model -> session.flush().toSingleDefault(model)).toMaybe();
+    }
+}
@@ -0,0 +1,273 @@
+package hibernate.impl;
+
+import hibernate.IHibernateSession;
+import hibernate.IHibernateSyncSession;
+import hibernate.impl.HibernateMessage.Action;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.buffer.Buffer;
+import io.vertx.reactivex.core.eventbus.Message;
+import io.vertx.reactivex.core.streams.WriteStream;
+import lombok.Getter;
+import org.hibernate.HibernateException;
+
+import javax.persistence.metamodel.Metamodel;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ *  Client of HibernateEventBusEndpoint. Every call is a separate request served by pooled session and flushed there,
+ *  so clear() and flush() do nothing, persist() returns endpoint copy of model (same instance in local delivery).
+ *  Transactions, units of work, selectStream(), selectPages() and exportTo() need server-side state and fail with HibernateException
+ */
+public class HibernateEventBusSession implements IHibernateSession {
+    private final Vertx vertx;
+    @Getter
+    private final String address;
+    private volatile boolean active = true;
+
+    public HibernateEventBusSession(Vertx vertx, String address) {
+        this(vertx, address, null);
+    }
+
+    /**
+     *  metamodel - entities of endpoint persistence unit, needed to transfer entities in clustered mode (see HibernateMessageCodec)
+     */
+    public HibernateEventBusSession(Vertx vertx, String address, Metamodel metamodel) {
+        this.vertx = vertx;
+        this.address = address;
+        HibernateMessageCodec.register(vertx.getDelegate(), metamodel);
+    }
+
+    @Override
+    public Completable close() {
+        return Completable.fromAction(() -> active = false);
+    }
+
+    @Override
+    public Completable clear() {
+        return Completable.complete();
+    }
+
+    @Override
+    public Completable flush() {
+        return Completable.complete();
+    }
+
+    @Override
+    public <T> Single<T> persist(T model) {
+        return write(Action.PERSIST, model);
+    }
+
+    @Override
+    public <T> Single<T> merge(T model) {
+        return write(Action.MERGE, model);
+    }
+
+    @Override
+    public <T> Single<T> remove(T model) {
+        return write(Action.REMOVE, model);
+    }
+
+    /**
+     *  Endpoint refreshes its own copy of model, so refreshed state is copied back into model as HibernateSession does
+     */
+    @Override
+    public <T> Single<T> refresh(T model) {
+        return write(Action.REFRESH, model).map(refreshed -> copyState(refreshed, model));
+    }
+
+    @Override
+    public <T> Flowable<Long> persistAll(Iterable<T> models) {
+        return persistAll(Flowable.fromIterable(models), HibernateService.DEFAULT_JDBC_BATCH_SIZE);
+    }
+
+    @Override
+    public <T> Flowable<Long> persistAll(Flowable<T> models, int batchSize) {
+        return writeAll(Action.PERSIST_ALL, models, batchSize);
+    }
+
+    @Override
+    public <T> Flowable<Long> mergeAll(Iterable<T> models) {
+        return mergeAll(Flowable.fromIterable(models), HibernateService.DEFAULT_JDBC_BATCH_SIZE);
+    }
+
+    @Override
+    public <T> Flowable<Long> mergeAll(Flowable<T> models, int batchSize) {
+        return writeAll(Action.MERGE_ALL, models, batchSize);
+    }
+
+    @Override
+    public <T> Maybe<T> find(Class<T> clazz, Long id) {
+        return request(HibernateMessage.request(Action.FIND).setEntityClass(clazz).setId(id))
+                .map(clazz::cast);
+    }
+
+    @Override
+    public <T> Observable<T> findAll(Class<T> clazz, Collection<Long> ids) {
+        return request(HibernateMessage.request(Action.FIND_ALL).setEntityClass(clazz).setIds(new ArrayList<>(ids)))
+                .flatMapObservable(result -> Observable.fromIterable((List<?>) result))
+                .map(clazz::cast);
+    }
+
+    @Override
+    public <T> Observable<T> select(HibernateQuery jpqlQuery, Class<T> clazz) {
+        return request(HibernateMessage.request(Action.SELECT).setEntityClass(clazz).setQuery(jpqlQuery))
+                .flatMapObservable(result -> Observable.fromIterable((List<?>) result))
+                .map(clazz::cast);
+    }
+
+    @Override
+    public <T> Observable<T> select(String jpqlString, Class<T> clazz) {
+        return select(new HibernateQuery(jpqlString), clazz);
+    }
+
+    @Override
+    public Observable<JsonObject> selectJson(HibernateQuery jpqlQuery) {
+        return selectJsonArray(jpqlQuery)
+                .flatMapObservable(rows -> Observable.range(0, rows.size()).map(rows::getJsonObject));
+    }
+
+    @Override
+    public Single<JsonArray> selectJsonArray(HibernateQuery jpqlQuery) {
+        return request(HibernateMessage.request(Action.SELECT_JSON).setQuery(jpqlQuery))
+                .map(JsonArray.class::cast)
+                .toSingle();
+    }
+
+    @Override
+    public Single<Buffer> selectJsonBuffer(HibernateQuery jpqlQuery) {
+        return selectJsonArray(jpqlQuery).map(rows -> Buffer.newInstance(rows.toBuffer()));
+    }
+
+    @Override
+    public <T> Flowable<T> selectStream(HibernateQuery jpqlQuery, Class<T> clazz, int fetchSize) {
+        return Flowable.error(unsupported("selectStream"));
+    }
+
+    @Override
+    public <T> Flowable<List<T>> selectPages(HibernateQuery jpqlQuery, Class<T> clazz, String keyPath, int pageSize) {
+        return Flowable.error(unsupported("selectPages"));
+    }
+
+    @Override
+    public Single<Long> exportTo(HibernateQuery jpqlQuery, WriteStream<Buffer> stream, HibernateExporter.Format format) {
+        return Single.error(unsupported("exportTo"));
+    }
+
+    @Override
+    public Single<Integer> execute(HibernateQuery jpqlQuery) {
+        return request(HibernateMessage.request(Action.EXECUTE).setQuery(jpqlQuery))
+                .map(Integer.class::cast)
+                .toSingle();
+    }
+
+    @Override
+    public Completable beginTransaction() {
+        return Completable.error(unsupported("beginTransaction"));
+    }
+
+    @Override
+    public Completable commitTransaction() {
+        return Completable.error(unsupported("commitTransaction"));
+    }
+
+    @Override
+    public Completable rollbackTransaction() {
+        return Completable.error(unsupported("rollbackTransaction"));
+    }
+
+    @Override
+    public <R> Single<R> inUnitOfWork(Function<IHibernateSyncSession, R> work) {
+        return Single.error(unsupported("inUnitOfWork"));
+    }
+
+    @Override
+    public <R> Single<R> inUnitOfWork(Function<IHibernateSyncSession, R> work, int maxRetries) {
+        return Single.error(unsupported("inUnitOfWork"));
+    }
+
+    @Override
+    public Single<Boolean> isActive() {
+        return Single.fromCallable(this::isActiveSync);
+    }
+
+    @Override
+    public boolean isActiveSync() {
+        return active;
+    }
+
+    //////////////////////////
+
+    @SuppressWarnings("unchecked")
+    private <T> Single<T> write(Action action, T model) {
+        return request(HibernateMessage.request(action).setModel(model))
+                .map(result -> (T) result)
+                .toSingle();
+    }
+
+    private static <T> T copyState(T source, T target) {
+        if (source == target) {
+            return target;
+        }
+        if (!target.getClass().isInstance(source)) {
+            throw new HibernateException("HS: Refreshed model is " + source.getClass().getName() + ", not " + target.getClass().getName());
+        }
+        for (Class<?> type = target.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                try {
+                    field.set(target, field.get(source));
+                } catch (IllegalAccessException e) {
+                    throw new HibernateException("HS: Can't copy refreshed field " + field, e);
+                }
+            }
+        }
+        return target;
+    }
+
+    private <T> Flowable<Long> writeAll(Action action, Flowable<T> models, int batchSize) {
+        if (batchSize <= 0) {
+            return Flowable.error(new HibernateException("HS: Batch size must be positive: " + batchSize));
+        }
+        return models.buffer(batchSize)
+                .concatMapSingle(batch -> request(HibernateMessage.request(action).setModels(batch))
+                        .map(Long.class::cast)
+                        .toSingle())
+                .scan(0L, Long::sum)
+                .skip(1);
+    }
+
+    /**
+     *  Returns result of reply, empty if it is null
+     */
+    private Maybe<Object> request(HibernateMessage message) {
+        return Single.defer(() -> {
+            if (!active) {
+                return Single.error(new HibernateException("Session is inactive: " + address));
+            }
+            return vertx.eventBus().<HibernateMessage>rxSend(address, message);
+        })
+                .onErrorResumeNext(e -> Single.error(e instanceof ReplyException ? new HibernateException("HS: " + e.getMessage(), e) : e))
+                .map(Message::body)
+                .flatMapMaybe(reply -> reply.getResult() == null ? Maybe.empty() : Maybe.just(reply.getResult()));
+    }
+
+    private HibernateException unsupported(String method) {
+        return new HibernateException("HS: " + method + "() is not supported by event bus session");
+    }
+}
@@ -0,0 +1,191 @@
+package hibernate.impl;
+
+import hibernate.HibernateOverloadException;
+import io.reactivex.Maybe;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.WorkerExecutor;
+import lombok.Getter;
+import org.hibernate.HibernateException;
+import utils.vertx.VertxUtils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ *  Dedicated named worker pool for Hibernate blocking calls with bounded queue.
+ *  Config keys: "worker-pool-name", "worker-pool-size", "worker-max-execute-time" (ms), "worker-max-queue" (0 - unbounded),
+ *  "worker-mode" ("worker-pool" or "virtual-thread", the last one requires JVM 21+)
+ */
+public class HibernateExecutor {
+    public static final String DEFAULT_POOL_NAME = "hibernate-worker";
+    public static final int DEFAULT_POOL_SIZE = 20;
+    public static final long DEFAULT_MAX_EXECUTE_TIME = 60_000L;
+    public static final int DEFAULT_MAX_QUEUE = 0;
+    public static final String WORKER_POOL_MODE = "worker-pool";
+    public static final String VIRTUAL_THREAD_MODE = "virtual-thread";
+    private static final int TASK_QUEUED = 0;
+    private static final int TASK_RUNNING = 1;
+    private static final int TASK_DONE = 2;
+    private static final int TASK_DISPOSED = 3;
+
+    @Getter
+    private final String name;
+    @Getter
+    private final int poolSize;
+    @Getter
+    private final int maxQueue;
+    @Getter
+    private final String mode;
+    /**
+     *  null in "virtual-thread" mode
+     */
+    @Getter
+    private final WorkerExecutor workerExecutor;
+    private final Vertx vertx;
+    private final ExecutorService virtualThreads;
+    private final Executor backend;
+    private final AtomicInteger queued = new AtomicInteger();
+    @Getter
+    private final HibernateMetrics metrics = new HibernateMetrics();
+
+    public HibernateExecutor(Vertx vertx, JsonObject config) {
+        this.vertx = vertx;
+        this.name = config.getString("worker-pool-name", DEFAULT_POOL_NAME);
+        this.poolSize = config.getInteger("worker-pool-size", DEFAULT_POOL_SIZE);
+        this.maxQueue = config.getInteger("worker-max-queue", DEFAULT_MAX_QUEUE);
+        long maxExecuteTime = config.getLong("worker-max-execute-time", DEFAULT_MAX_EXECUTE_TIME);
+        this.mode = config.getString("worker-mode", WORKER_POOL_MODE);
+        switch (mode) {
+            case WORKER_POOL_MODE:
+                this.workerExecutor = vertx.createSharedWorkerExecutor(name, poolSize, maxExecuteTime, TimeUnit.MILLISECONDS);
+                this.virtualThreads = null;
+                this.backend = this::executeOnWorker;
+                break;
+            case VIRTUAL_THREAD_MODE:
+                this.workerExecutor = null;
+                this.virtualThreads = createVirtualThreadExecutor();
+                this.backend = virtualThreads;
+                break;
+            default:
+                throw new HibernateException("HS: Unknown worker-mode: " + mode);
+        }
+    }
+
+    public Maybe<Boolean> rxExecuteAndComplete(Runnable action) {
+        return rxExecuteAndComplete(HibernateOperation.OTHER, action);
+    }
+
+    public Maybe<Boolean> rxExecuteAndComplete(HibernateOperation operation, Runnable action) {
+        return rxExecuteAndSupply(operation, () -> {
+            action.run();
+            return true; // RxJava2 hates nulls
+        });
+    }
+
+    public <T> Maybe<T> rxExecuteAndSupply(Supplier<T> supplier) {
+        return rxExecuteAndSupply(HibernateOperation.OTHER, supplier);
+    }
+
+    public <T> Maybe<T> rxExecuteAndSupply(HibernateOperation operation, Supplier<T> supplier) {
+        return rxExecuteAndSupply(backend, operation, null, supplier);
+    }
+
+    /**
+     *  Every HibernateSession gets its own lane, because EntityManager is not thread-safe
+     */
+    public HibernateLane createLane() {
+        return new HibernateLane(this, backend);
+    }
+
+    /**
+     *  Task is measured from subscription to start on worker (queue wait) and from start to end (execution)
+     */
+    protected <T> Maybe<T> rxExecuteAndSupply(Executor target, HibernateOperation operation, String queryName, Supplier<T> supplier) {
+        return rxExecuteAndSupply(target, operation, queryName, supplier, null);
+    }
+
+    /**
+     *  Cancellable task: if subscriber disposes it before start, task is skipped and worker is not taken,
+     *  if it disposes running task, cancel is called on disposing thread (never after task end).
+     *  Task rejected by closed executor is failed and leaves the queue
+     */
+    protected <T> Maybe<T> rxExecuteAndSupply(Executor target, HibernateOperation operation, String queryName, Supplier<T> supplier,
+                                              Runnable cancel) {
+        return Maybe.defer(() -> {
+            if (queued.incrementAndGet() > maxQueue && maxQueue > 0) {
+                queued.decrementAndGet();
+                return Maybe.error(new HibernateOverloadException("HS: Worker queue is full: " + name));
+            }
+            long submittedAt = System.nanoTime();
+            AtomicInteger state = new AtomicInteger(TASK_QUEUED);
+            Supplier<T> dequeueAndSupply = () -> {
+                queued.decrementAndGet();
+                if (!state.compareAndSet(TASK_QUEUED, TASK_RUNNING)) {
+                    return null;
+                }
+                long startedAt = System.nanoTime();
+                try {
+                    return supplier.get();
+                } finally {
+                    synchronized (state) {
+                        state.set(TASK_DONE);
+                    }
+                    metrics.record(operation, queryName, startedAt - submittedAt, System.nanoTime() - startedAt);
+                }
+            };
+            Maybe<T> task = VertxUtils.rxExecuteAndSupply(vertx, target, dequeueAndSupply, queued::decrementAndGet);
+            if (cancel == null) {
+                return task;
+            }
+            return task.doOnDispose(() -> {
+                if (state.compareAndSet(TASK_QUEUED, TASK_DISPOSED)) {
+                    return;
+                }
+                synchronized (state) {
+                    if (state.get() == TASK_RUNNING) {
+                        cancel.run();
+                    }
+                }
+            });
+        });
+    }
+
+    public int getQueueSize() {
+        return queued.get();
+    }
+
+    public void close() {
+        if (workerExecutor != null) {
+            workerExecutor.close();
+        }
+        if (virtualThreads != null) {
+            virtualThreads.shutdown();
+        }
+    }
+
+    /**
+     *  Unordered dispatch: ordering is guaranteed by HibernateLane, not by Vert.x context
+     */
+    private void executeOnWorker(Runnable task) {
+        workerExecutor.getDelegate().executeBlocking(future -> {
+            task.run();
+            future.complete();
+        }, false, ar -> { });
+    }
+
+    /**
+     *  Project targets Java 8, so virtual thread executor is looked up reflectively
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new HibernateException("HS: Virtual threads are not supported by JVM " + System.getProperty("java.version"), e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package hibernate.impl;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.buffer.Buffer;
+import lombok.Getter;
+import org.hibernate.ScrollableResults;
+
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ *  Encodes scrolled projection rows into chunks of about chunkSize bytes, every chunk buffer is allocated once with full capacity.
+ *  NDJSON: one JSON object per line, keyed by select aliases (or positions). CSV (RFC 4180): header line of aliases,
+ *  values with separator, quote or line break are quoted. Values are converted as in selectJson()
+ */
+public class HibernateExporter {
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final String CSV_LINE_END = "\r\n";
+
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    private final Format format;
+    private final int chunkSize;
+    private final Function<Object, Object> valueMapper;
+    @Getter
+    private long rows;
+    @Getter
+    private volatile boolean done;
+
+    protected HibernateExporter(Format format, int chunkSize, Function<Object, Object> valueMapper) {
+        this.format = format;
+        this.chunkSize = chunkSize;
+        this.valueMapper = valueMapper;
+    }
+
+    /**
+     *  Runs on lane: reads cursor until chunk is full or cursor is over (then isDone() is true)
+     */
+    protected Buffer nextChunk(ScrollableResults results) {
+        io.vertx.core.buffer.Buffer chunk = io.vertx.core.buffer.Buffer.buffer(chunkSize + chunkSize / 8);
+        while (chunk.length() < chunkSize) {
+            if (!results.next()) {
+                done = true;
+                break;
+            }
+            Object[] row = results.get();
+            Object value = row.length == 1 ? row[0] : row;
+            if (format == Format.CSV && rows == 0) {
+                appendCsvHeader(chunk, value);
+            }
+            if (format == Format.CSV) {
+                appendCsvRow(chunk, value);
+            } else {
+                chunk.appendBuffer(toJson(value).toBuffer()).appendByte((byte) '\n');
+            }
+            rows++;
+        }
+        return Buffer.newInstance(chunk);
+    }
+
+    private JsonObject toJson(Object row) {
+        JsonObject json = new JsonObject();
+        Object[] values = valuesOf(row);
+        String[] names = namesOf(row, values.length);
+        for (int i = 0; i < values.length; i++) {
+            json.put(names[i], valueMapper.apply(values[i]));
+        }
+        return json;
+    }
+
+    private void appendCsvHeader(io.vertx.core.buffer.Buffer chunk, Object row) {
+        String[] names = namesOf(row, valuesOf(row).length);
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                chunk.appendByte((byte) ',');
+            }
+            chunk.appendString(csvEscape(names[i]));
+        }
+        chunk.appendString(CSV_LINE_END);
+    }
+
+    private void appendCsvRow(io.vertx.core.buffer.Buffer chunk, Object row) {
+        Object[] values = valuesOf(row);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                chunk.appendByte((byte) ',');
+            }
+            Object value = valueMapper.apply(values[i]);
+            if (value instanceof byte[]) {
+                chunk.appendString(Base64.getEncoder().encodeToString((byte[]) value));
+            } else if (value != null) {
+                chunk.appendString(csvEscape(value.toString()));
+            }
+        }
+        chunk.appendString(CSV_LINE_END);
+    }
+
+    private static Object[] valuesOf(Object row) {
+        if (row instanceof Tuple) {
+            return ((Tuple) row).toArray();
+        }
+        return row instanceof Object[] ? (Object[]) row : new Object[]{row};
+    }
+
+    private static String[] namesOf(Object row, int size) {
+        String[] names = new String[size];
+        List<TupleElement<?>> elements = row instanceof Tuple ? ((Tuple) row).getElements() : null;
+        for (int i = 0; i < size; i++) {
+            String alias = elements != null ? elements.get(i).getAlias() : null;
+            names[i] = alias != null ? alias : String.valueOf(i);
+        }
+        return names;
+    }
+
+    private static String csvEscape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,84 @@
+package hibernate.impl;
+
+import io.reactivex.Maybe;
+import io.reactivex.MaybeEmitter;
+import io.vertx.reactivex.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ *  DataLoader-style coalescing of find() calls: ids requested within one event-loop tick (window = 0)
+ *  or within window ms are loaded by one multi-id query in a single worker hop.
+ *  Any other task queued on the lane flushes pending finds first, so session keeps submission order
+ */
+public class HibernateFindCoalescer {
+    private final Vertx vertx;
+    private final HibernateLane lane;
+    private final long window;
+    private final Function<Map<Class<?>, List<Long>>, Map<Class<?>, Map<Long, Object>>> loader;
+    private Map<Class<?>, Map<Long, List<MaybeEmitter<Object>>>> pending = new HashMap<>();
+
+    /**
+     *  loader runs on the lane and returns found entities by class and id
+     */
+    public HibernateFindCoalescer(Vertx vertx, HibernateLane lane, long window,
+                                     Function<Map<Class<?>, List<Long>>, Map<Class<?>, Map<Long, Object>>> loader) {
+        this.vertx = vertx;
+        this.lane = lane;
+        this.window = window;
+        this.loader = loader;
+        lane.setBeforeExecute(this::flush);
+    }
+
+    public <T> Maybe<T> find(Class<T> clazz, Long id) {
+        return Maybe.create(emitter -> enqueue(clazz, id, emitter)).map(clazz::cast);
+    }
+
+    private synchronized void enqueue(Class<?> clazz, Long id, MaybeEmitter<Object> emitter) {
+        boolean schedule = pending.isEmpty();
+        pending.computeIfAbsent(clazz, c -> new HashMap<>())
+                .computeIfAbsent(id, i -> new ArrayList<>())
+                .add(emitter);
+        if (schedule) {
+            if (window > 0) {
+                vertx.setTimer(window, timerId -> flush());
+            } else {
+                vertx.runOnContext(v -> flush());
+            }
+        }
+    }
+
+    private void flush() {
+        Map<Class<?>, Map<Long, List<MaybeEmitter<Object>>>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        Map<Class<?>, List<Long>> ids = new HashMap<>();
+        batch.forEach((clazz, emitters) -> ids.put(clazz, new ArrayList<>(emitters.keySet())));
+
+        lane.rxExecuteAndSupply(HibernateOperation.FIND, () -> loader.apply(ids))
+                .toSingle()
+                .subscribe(loaded -> batch.forEach((clazz, emitters) -> emitters.forEach((id, waiting) -> {
+                    Object entity = loaded.getOrDefault(clazz, new HashMap<>()).get(id);
+                    waiting.forEach(emitter -> {
+                        if (emitter.isDisposed()) {
+                            return;
+                        }
+                        if (entity == null) {
+                            emitter.onComplete();
+                        } else {
+                            emitter.onSuccess(entity);
+                        }
+                    });
+                })), error -> batch.values().forEach(emitters ->
+                        emitters.values().forEach(waiting -> waiting.forEach(emitter -> emitter.tryOnError(error)))));
+    }
+}
@@ -0,0 +1,49 @@
+package hibernate.impl;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  Invalidation counters of cache per entity type. Stamp is taken before loading and compared before put:
+ *  it changes if any of its types (or everything) was invalidated in between, so stale loads are not cached.
+ *  Stamp is sum of monotonic counters, so it changes whenever any of them grows
+ */
+class HibernateGenerations {
+    private final AtomicLong all = new AtomicLong();
+    private final AtomicLong any = new AtomicLong();
+    private final Map<Class<?>, AtomicLong> byType = new ConcurrentHashMap<>();
+
+    long stamp(Class<?> type) {
+        return all.get() + counter(type).get();
+    }
+
+    /**
+     *  types - entity types read by query, null if unknown (then any invalidation changes stamp)
+     */
+    long stamp(Set<Class<?>> types) {
+        if (types == null) {
+            return any.get();
+        }
+        long stamp = all.get();
+        for (Class<?> type : types) {
+            stamp += counter(type).get();
+        }
+        return stamp;
+    }
+
+    void invalidate(Class<?> type) {
+        counter(type).incrementAndGet();
+        any.incrementAndGet();
+    }
+
+    void invalidateAll() {
+        all.incrementAndGet();
+        any.incrementAndGet();
+    }
+
+    private AtomicLong counter(Class<?> type) {
+        return byType.computeIfAbsent(type, key -> new AtomicLong());
+    }
+}
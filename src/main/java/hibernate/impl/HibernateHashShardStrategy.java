@@ -0,0 +1,22 @@
+package hibernate.impl;
+
+import hibernate.IHibernateShardStrategy;
+import io.vertx.core.json.JsonObject;
+import lombok.NonNull;
+
+/**
+ *  Shard by hashCode() of key, key type must have stable hashCode() (by example Long or String)
+ */
+public class HibernateHashShardStrategy implements IHibernateShardStrategy {
+    private int shardCount;
+
+    @Override
+    public void init(JsonObject strategyConfig, int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    @Override
+    public int shardOf(@NonNull Object shardKey) {
+        return Math.floorMod(shardKey.hashCode(), shardCount);
+    }
+}
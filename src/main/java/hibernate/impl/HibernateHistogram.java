@@ -0,0 +1,68 @@
+package hibernate.impl;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  Lock-free latency histogram with power-of-two nanosecond buckets, record() doesn't allocate.
+ *  Percentiles are reported as bucket upper bounds, so they are accurate within factor of 2
+ */
+public class HibernateHistogram {
+    private static final int BUCKETS = Long.SIZE + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0L);
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0L);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     *  Returns "count", "mean", "max", "p50", "p90", "p99" (microseconds)
+     */
+    public JsonObject snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        return new JsonObject()
+                .put("count", total)
+                .put("mean", total == 0 ? 0L : toMicros(sum.sum() / total))
+                .put("max", toMicros(max.get()))
+                .put("p50", toMicros(percentile(counts, total, 0.50)))
+                .put("p90", toMicros(percentile(counts, total, 0.90)))
+                .put("p99", toMicros(percentile(counts, total, 0.99)));
+    }
+
+    private static long percentile(long[] counts, long total, double quantile) {
+        long threshold = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= threshold && seen > 0) {
+                return i == 0 ? 0L : (i >= Long.SIZE - 1 ? Long.MAX_VALUE : 1L << i);
+            }
+        }
+        return 0L;
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
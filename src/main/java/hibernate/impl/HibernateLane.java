@@ -0,0 +1,193 @@
+package hibernate.impl;
+
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.hibernate.ScrollableResults;
+import utils.vertx.VertxUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ *  Serial lane over HibernateExecutor: tasks of one lane run one at a time in submission order,
+ *  different lanes run in parallel on executor threads
+ */
+public class HibernateLane implements Executor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HibernateLane.class);
+    private static final Object CURSOR_DISPOSED = new Object();
+    private static final Object CURSOR_DELIVERED = new Object();
+
+    private final HibernateExecutor executor;
+    private final Executor delegate;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile Runnable beforeExecute;
+
+    protected HibernateLane(HibernateExecutor executor, Executor delegate) {
+        this.executor = executor;
+        this.delegate = delegate;
+    }
+
+    public Maybe<Boolean> rxExecuteAndComplete(Runnable action) {
+        return rxExecuteAndComplete(HibernateOperation.OTHER, action);
+    }
+
+    public Maybe<Boolean> rxExecuteAndComplete(HibernateOperation operation, Runnable action) {
+        return rxExecuteAndSupply(operation, () -> {
+            action.run();
+            return true; // RxJava2 hates nulls
+        });
+    }
+
+    public <T> Maybe<T> rxExecuteAndSupply(Supplier<T> supplier) {
+        return rxExecuteAndSupply(HibernateOperation.OTHER, supplier);
+    }
+
+    public <T> Maybe<T> rxExecuteAndSupply(HibernateOperation operation, Supplier<T> supplier) {
+        return rxExecuteAndSupply(operation, null, supplier);
+    }
+
+    /**
+     *  queryName - name of named query for metrics, or null
+     */
+    public <T> Maybe<T> rxExecuteAndSupply(HibernateOperation operation, String queryName, Supplier<T> supplier) {
+        return executor.rxExecuteAndSupply(this, operation, queryName, supplier);
+    }
+
+    /**
+     *  Query task: skipped if disposed before start, cancel is called if disposed while running (see HibernateExecutor)
+     */
+    public <T> Maybe<T> rxExecuteAndSupply(HibernateOperation operation, String queryName, Supplier<T> supplier, Runnable cancel) {
+        return executor.rxExecuteAndSupply(this, operation, queryName, supplier, cancel);
+    }
+
+    /**
+     *  Opens cursor and reads it by fetchSize chunks on the lane as downstream requests them.
+     *  Cursor is closed on the lane on complete, error or cancel (see rxUsingCursor)
+     */
+    public <T> Flowable<T> rxScroll(Supplier<ScrollableResults> open, Function<Object, T> rowMapper, int fetchSize) {
+        return rxScroll(null, open, rowMapper, fetchSize, null);
+    }
+
+    public <T> Flowable<T> rxScroll(String queryName, Supplier<ScrollableResults> open, Function<Object, T> rowMapper, int fetchSize,
+                                    Runnable cancel) {
+        return rxUsingCursor(queryName, open, cancel, results -> Flowable.defer(() -> nextChunk(results, queryName, rowMapper, fetchSize).toFlowable())
+                .repeat()
+                .takeUntil(chunk -> chunk.size() < fetchSize)
+                .concatMapIterable(chunk -> chunk, 1));
+    }
+
+    /**
+     *  Opens cursor on the lane and hands it to reader, cursor is closed on the lane when reader's flowable
+     *  completes, fails or is cancelled. If subscriber disposes while cursor opens, cancel is called (may be null)
+     *  and cursor opened after dispose is closed at once
+     */
+    public <T> Flowable<T> rxUsingCursor(String queryName, Supplier<ScrollableResults> open, Runnable cancel,
+                                         Function<ScrollableResults, Flowable<T>> reader) {
+        return Flowable.defer(() -> {
+            AtomicReference<Object> cursor = new AtomicReference<>();
+            Supplier<ScrollableResults> openOrClose = () -> {
+                ScrollableResults results = open.get();
+                if (!cursor.compareAndSet(null, results)) {
+                    results.close();
+                    return null;
+                }
+                return results;
+            };
+            return rxExecuteAndSupply(HibernateOperation.SELECT, queryName, openOrClose, cancel)
+                    .doOnDispose(() -> {
+                        Object opened = cursor.getAndSet(CURSOR_DISPOSED);
+                        if (opened instanceof ScrollableResults) {
+                            closeCursor((ScrollableResults) opened);
+                        }
+                    })
+                    .toSingle()
+                    .flatMapPublisher(results -> {
+                        if (!cursor.compareAndSet(results, CURSOR_DELIVERED)) {
+                            return Flowable.<T>empty();
+                        }
+                        return reader.apply(results).doFinally(() -> closeCursor(results));
+                    });
+        });
+    }
+
+    /**
+     *  Runs before every task is queued (on submitting thread), used by HibernateFindCoalescer
+     *  to queue pending finds ahead of the task
+     */
+    protected void setBeforeExecute(Runnable beforeExecute) {
+        this.beforeExecute = beforeExecute;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Runnable hook = beforeExecute;
+        if (hook != null) {
+            hook.run();
+        }
+        tasks.offer(task);
+        if (pending.getAndIncrement() == 0) {
+            scheduleNext();
+        }
+    }
+
+    private <T> Single<List<T>> nextChunk(ScrollableResults results, String queryName, Function<Object, T> rowMapper, int fetchSize) {
+        return rxExecuteAndSupply(HibernateOperation.FETCH, queryName, () -> {
+            List<T> chunk = new ArrayList<>(fetchSize);
+            while (chunk.size() < fetchSize && results.next()) {
+                chunk.add(rowMapper.apply(results.get(0)));
+            }
+            return chunk;
+        }).toSingle();
+    }
+
+    private void closeCursor(ScrollableResults results) {
+        rxExecuteAndComplete(HibernateOperation.CLOSE, results::close)
+                .subscribe(closed -> { }, e -> LOGGER.error("HS: " + e));
+    }
+
+    /**
+     *  Rejected task (closed executor) is failed and the next one is scheduled,
+     *  so lane never stays with pending tasks and no running one
+     */
+    private void scheduleNext() {
+        while (true) {
+            Runnable task = tasks.poll();
+            try {
+                delegate.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        if (pending.decrementAndGet() > 0) {
+                            scheduleNext();
+                        }
+                    }
+                });
+                return;
+            } catch (RuntimeException e) {
+                reject(task, e);
+                if (pending.decrementAndGet() == 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void reject(Runnable task, RuntimeException error) {
+        if (task instanceof VertxUtils.RejectableTask) {
+            ((VertxUtils.RejectableTask) task).reject(error);
+        } else {
+            LOGGER.error("HS: Task is rejected: " + error);
+        }
+    }
+}
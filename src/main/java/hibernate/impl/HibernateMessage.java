@@ -0,0 +1,70 @@
+package hibernate.impl;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import org.hibernate.HibernateException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Request and reply of HibernateEventBusEndpoint. Passed by reference inside one Vert.x instance,
+ *  so neither side may change it after send (see HibernateMessageCodec)
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+public class HibernateMessage {
+    public enum Action {
+        FIND, FIND_ALL, SELECT, SELECT_JSON, EXECUTE, PERSIST, MERGE, REMOVE, REFRESH, PERSIST_ALL, MERGE_ALL
+    }
+
+    private Action action;
+    private String entityClass;
+    private Long id;
+    private ArrayList<Long> ids;
+    private HibernateQuery query;
+    private Object model;
+    private ArrayList<Object> models;
+    /**
+     *  Reply: entity, List, Integer, Long or JsonArray (for SELECT_JSON), null if nothing found
+     */
+    private Object result;
+
+    public static HibernateMessage request(Action action) {
+        return new HibernateMessage().setAction(action);
+    }
+
+    public static HibernateMessage reply(Object result) {
+        return new HibernateMessage().setResult(result);
+    }
+
+    public HibernateMessage setEntityClass(Class<?> clazz) {
+        this.entityClass = clazz.getName();
+        return this;
+    }
+
+    public HibernateMessage setEntityClassName(String entityClass) {
+        this.entityClass = entityClass;
+        return this;
+    }
+
+    public HibernateMessage setIds(List<Long> ids) {
+        this.ids = new ArrayList<>(ids);
+        return this;
+    }
+
+    public HibernateMessage setModels(List<?> models) {
+        this.models = new ArrayList<>(models);
+        return this;
+    }
+
+    public Class<?> resolveEntityClass() {
+        try {
+            return Class.forName(entityClass, false, Thread.currentThread().getContextClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new HibernateException("HS: Unknown entity class: " + entityClass, e);
+        }
+    }
+}
@@ -0,0 +1,547 @@
+package hibernate.impl;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.proxy.HibernateProxy;
+
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.SingularAttribute;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ *  Local delivery passes HibernateMessage by reference. Clustered delivery uses explicit binary layout:
+ *  kind byte (request/reply), then for request action, entity class name, id, ids, query (JPQL or name, cache TTL,
+ *  timeout and typed parameters), model and models, for reply result. Every value is written with type tag,
+ *  entities are written by singular attributes of the metamodel (associations as references by id, collections
+ *  are not transferred). Decoding instantiates only metamodel entities and embeddables, basic values and enums,
+ *  nothing is deserialized by Java serialization. Entity transfer needs metamodel, see register(Vertx, Metamodel)
+ */
+public class HibernateMessageCodec implements MessageCodec<HibernateMessage, HibernateMessage> {
+    public static final String NAME = "hibernate-message";
+    private static final byte REQUEST = 1;
+    private static final byte REPLY = 2;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte SHORT = 6;
+    private static final byte BYTE = 7;
+    private static final byte BOOLEAN = 8;
+    private static final byte CHARACTER = 9;
+    private static final byte BIG_DECIMAL = 10;
+    private static final byte BIG_INTEGER = 11;
+    private static final byte BYTES = 12;
+    private static final byte DATE = 13;
+    private static final byte SQL_DATE = 14;
+    private static final byte SQL_TIME = 15;
+    private static final byte SQL_TIMESTAMP = 16;
+    private static final byte LOCAL_DATE = 17;
+    private static final byte LOCAL_TIME = 18;
+    private static final byte LOCAL_DATE_TIME = 19;
+    private static final byte INSTANT = 20;
+    private static final byte UUID_VALUE = 21;
+    private static final byte ENUM = 22;
+    private static final byte LIST = 23;
+    private static final byte JSON_ARRAY = 24;
+    private static final byte JSON_OBJECT = 25;
+    private static final byte ENTITY = 26;
+    private static final byte EMBEDDABLE = 27;
+    private static final byte REFERENCE = 28;
+
+    private final Metamodel metamodel;
+
+    public HibernateMessageCodec(Metamodel metamodel) {
+        this.metamodel = metamodel;
+    }
+
+    /**
+     *  Registers codec without metamodel (local delivery or entity-free messages), unless codec is already registered
+     */
+    public static void register(Vertx vertx) {
+        register(vertx, null);
+    }
+
+    /**
+     *  Registers codec as default for HibernateMessage. Codec with metamodel replaces registered one
+     */
+    public static synchronized void register(Vertx vertx, Metamodel metamodel) {
+        try {
+            vertx.eventBus().registerDefaultCodec(HibernateMessage.class, new HibernateMessageCodec(metamodel));
+        } catch (IllegalStateException e) {
+            if (metamodel != null) {
+                vertx.eventBus().unregisterDefaultCodec(HibernateMessage.class);
+                vertx.eventBus().registerDefaultCodec(HibernateMessage.class, new HibernateMessageCodec(metamodel));
+            }
+        }
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, HibernateMessage message) {
+        if (message.getAction() == null) {
+            buffer.appendByte(REPLY);
+            writeValue(buffer, message.getResult());
+            return;
+        }
+        buffer.appendByte(REQUEST).appendByte((byte) message.getAction().ordinal());
+        writeString(buffer, message.getEntityClass());
+        writeValue(buffer, message.getId());
+        writeValue(buffer, message.getIds());
+        writeQuery(buffer, message.getQuery());
+        writeValue(buffer, message.getModel());
+        writeValue(buffer, message.getModels());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public HibernateMessage decodeFromWire(int pos, Buffer buffer) {
+        Reader in = new Reader(buffer, pos);
+        try {
+            byte kind = in.readByte();
+            if (kind == REPLY) {
+                return HibernateMessage.reply(readValue(in));
+            }
+            if (kind != REQUEST) {
+                throw new HibernateException("HS: Unknown message kind: " + kind);
+            }
+            int action = in.readByte();
+            if (action < 0 || action >= HibernateMessage.Action.values().length) {
+                throw new HibernateException("HS: Unknown action: " + action);
+            }
+            HibernateMessage message = HibernateMessage.request(HibernateMessage.Action.values()[action]);
+            message.setEntityClassName(readString(in));
+            message.setId((Long) readValue(in));
+            List<Long> ids = (List<Long>) readValue(in);
+            if (ids != null) {
+                message.setIds(ids);
+            }
+            message.setQuery(readQuery(in));
+            message.setModel(readValue(in));
+            List<Object> models = (List<Object>) readValue(in);
+            if (models != null) {
+                message.setModels(models);
+            }
+            return message;
+        } catch (ClassCastException | IndexOutOfBoundsException e) {
+            throw new HibernateException("HS: Malformed message", e);
+        }
+    }
+
+    @Override
+    public HibernateMessage transform(HibernateMessage message) {
+        return message;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+
+    //////////////////////////
+    //     ENCODING
+    //////////////////////////
+
+    private void writeQuery(Buffer buffer, HibernateQuery query) {
+        if (query == null) {
+            buffer.appendByte(NULL);
+            return;
+        }
+        buffer.appendByte((byte) 1);
+        writeString(buffer, query.getJpql());
+        writeString(buffer, query.getName());
+        buffer.appendLong(query.getCacheTtl()).appendLong(query.getTimeout()).appendInt(query.getValues().size());
+        for (Map.Entry<String, Object> param : query.getValues().entrySet()) {
+            writeString(buffer, param.getKey());
+            writeValue(buffer, param.getValue());
+        }
+    }
+
+    private void writeValue(Buffer buffer, Object value) {
+        if (value == null) {
+            buffer.appendByte(NULL);
+        } else if (value instanceof String) {
+            writeString(buffer.appendByte(STRING), (String) value);
+        } else if (value instanceof Integer) {
+            buffer.appendByte(INTEGER).appendInt((Integer) value);
+        } else if (value instanceof Long) {
+            buffer.appendByte(LONG).appendLong((Long) value);
+        } else if (value instanceof Double) {
+            buffer.appendByte(DOUBLE).appendDouble((Double) value);
+        } else if (value instanceof Float) {
+            buffer.appendByte(FLOAT).appendFloat((Float) value);
+        } else if (value instanceof Short) {
+            buffer.appendByte(SHORT).appendShort((Short) value);
+        } else if (value instanceof Byte) {
+            buffer.appendByte(BYTE).appendByte((Byte) value);
+        } else if (value instanceof Boolean) {
+            buffer.appendByte(BOOLEAN).appendByte((byte) ((Boolean) value ? 1 : 0));
+        } else if (value instanceof Character) {
+            buffer.appendByte(CHARACTER).appendShort((short) ((Character) value).charValue());
+        } else if (value instanceof BigDecimal) {
+            writeString(buffer.appendByte(BIG_DECIMAL), value.toString());
+        } else if (value instanceof BigInteger) {
+            writeString(buffer.appendByte(BIG_INTEGER), value.toString());
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            buffer.appendByte(BYTES).appendInt(bytes.length).appendBytes(bytes);
+        } else if (value instanceof Timestamp) {
+            buffer.appendByte(SQL_TIMESTAMP).appendLong(((Timestamp) value).getTime()).appendInt(((Timestamp) value).getNanos());
+        } else if (value instanceof java.sql.Date) {
+            buffer.appendByte(SQL_DATE).appendLong(((Date) value).getTime());
+        } else if (value instanceof Time) {
+            buffer.appendByte(SQL_TIME).appendLong(((Date) value).getTime());
+        } else if (value instanceof Date) {
+            buffer.appendByte(DATE).appendLong(((Date) value).getTime());
+        } else if (value instanceof LocalDate || value instanceof LocalTime || value instanceof LocalDateTime
+                || value instanceof Instant || value instanceof UUID) {
+            writeString(buffer.appendByte(temporalTag(value)), value.toString());
+        } else if (value instanceof Enum) {
+            writeString(buffer.appendByte(ENUM), ((Enum<?>) value).getDeclaringClass().getName());
+            writeString(buffer, ((Enum<?>) value).name());
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            buffer.appendByte(LIST).appendInt(list.size());
+            list.forEach(item -> writeValue(buffer, item));
+        } else if (value instanceof JsonArray) {
+            writeString(buffer.appendByte(JSON_ARRAY), ((JsonArray) value).encode());
+        } else if (value instanceof JsonObject) {
+            writeString(buffer.appendByte(JSON_OBJECT), ((JsonObject) value).encode());
+        } else {
+            writeManaged(buffer, value);
+        }
+    }
+
+    private static byte temporalTag(Object value) {
+        if (value instanceof LocalDate) {
+            return LOCAL_DATE;
+        }
+        if (value instanceof LocalTime) {
+            return LOCAL_TIME;
+        }
+        if (value instanceof LocalDateTime) {
+            return LOCAL_DATE_TIME;
+        }
+        return value instanceof Instant ? INSTANT : UUID_VALUE;
+    }
+
+    private void writeManaged(Buffer buffer, Object value) {
+        Object unproxied = Hibernate.unproxy(value);
+        ManagedType<?> type = managedType(unproxied.getClass().getName());
+        buffer.appendByte(type instanceof EntityType ? ENTITY : EMBEDDABLE);
+        writeString(buffer, type.getJavaType().getName());
+        List<SingularAttribute<?, ?>> attributes = attributesOf(type);
+        buffer.appendInt(attributes.size());
+        for (SingularAttribute<?, ?> attribute : attributes) {
+            writeString(buffer, attribute.getName());
+            Object attributeValue = readMember(attribute, unproxied);
+            if (attributeValue != null && attribute.isAssociation()) {
+                EntityType<?> target = (EntityType<?>) attribute.getType();
+                SingularAttribute<?, ?> targetId = target.getId(target.getIdType().getJavaType());
+                buffer.appendByte(REFERENCE);
+                writeString(buffer, target.getJavaType().getName());
+                writeValue(buffer, attributeValue instanceof HibernateProxy
+                        ? ((HibernateProxy) attributeValue).getHibernateLazyInitializer().getIdentifier()
+                        : readMember(targetId, attributeValue));
+            } else {
+                writeValue(buffer, attributeValue);
+            }
+        }
+    }
+
+    private static void writeString(Buffer buffer, String value) {
+        if (value == null) {
+            buffer.appendInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.appendInt(bytes.length).appendBytes(bytes);
+    }
+
+    //////////////////////////
+    //     DECODING
+    //////////////////////////
+
+    private HibernateQuery readQuery(Reader in) {
+        if (in.readByte() == NULL) {
+            return null;
+        }
+        String jpql = readString(in);
+        String name = readString(in);
+        HibernateQuery query = name != null ? HibernateQuery.named(name) : new HibernateQuery(jpql);
+        query.setCacheTtl(in.readLong()).setTimeout(in.readLong());
+        int size = in.readCount();
+        for (int i = 0; i < size; i++) {
+            query.put(readString(in), readValue(in));
+        }
+        return query;
+    }
+
+    private Object readValue(Reader in) {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INTEGER:
+                return in.buffer.getInt(in.advance(4));
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.buffer.getDouble(in.advance(8));
+            case FLOAT:
+                return in.buffer.getFloat(in.advance(4));
+            case SHORT:
+                return in.buffer.getShort(in.advance(2));
+            case BYTE:
+                return in.readByte();
+            case BOOLEAN:
+                return in.readByte() != 0;
+            case CHARACTER:
+                return (char) in.buffer.getShort(in.advance(2));
+            case BIG_DECIMAL:
+                return new BigDecimal(readString(in));
+            case BIG_INTEGER:
+                return new BigInteger(readString(in));
+            case BYTES:
+                int length = in.readCount();
+                return in.buffer.getBytes(in.advance(length), in.pos);
+            case DATE:
+                return new Date(in.readLong());
+            case SQL_DATE:
+                return new java.sql.Date(in.readLong());
+            case SQL_TIME:
+                return new Time(in.readLong());
+            case SQL_TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.buffer.getInt(in.advance(4)));
+                return timestamp;
+            case LOCAL_DATE:
+                return LocalDate.parse(readString(in));
+            case LOCAL_TIME:
+                return LocalTime.parse(readString(in));
+            case LOCAL_DATE_TIME:
+                return LocalDateTime.parse(readString(in));
+            case INSTANT:
+                return Instant.parse(readString(in));
+            case UUID_VALUE:
+                return UUID.fromString(readString(in));
+            case ENUM:
+                return readEnum(readString(in), readString(in));
+            case LIST:
+                int size = in.readCount();
+                List<Object> list = new ArrayList<>(Math.min(size, 1024));
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            case JSON_ARRAY:
+                return new JsonArray(readString(in));
+            case JSON_OBJECT:
+                return new JsonObject(readString(in));
+            case ENTITY:
+            case EMBEDDABLE:
+                return readManaged(in, readString(in));
+            case REFERENCE:
+                return readReference(readString(in), readValue(in));
+            default:
+                throw new HibernateException("HS: Unknown value tag: " + tag);
+        }
+    }
+
+    private Object readManaged(Reader in, String className) {
+        ManagedType<?> type = managedType(className);
+        Object instance = instantiate(type);
+        int size = in.readCount();
+        for (int i = 0; i < size; i++) {
+            String name = readString(in);
+            Attribute<?, ?> attribute = type.getAttributes().stream()
+                    .filter(candidate -> candidate.getName().equals(name) && candidate instanceof SingularAttribute)
+                    .findFirst()
+                    .orElseThrow(() -> new HibernateException("HS: Unknown attribute: " + className + "." + name));
+            writeMember(attribute, instance, readValue(in));
+        }
+        return instance;
+    }
+
+    /**
+     *  Association target with id only, endpoint resolves it by id on merge
+     */
+    private Object readReference(String className, Object id) {
+        ManagedType<?> type = managedType(className);
+        if (!(type instanceof EntityType)) {
+            throw new HibernateException("HS: Reference to non-entity: " + className);
+        }
+        EntityType<?> entityType = (EntityType<?>) type;
+        Object reference = instantiate(entityType);
+        writeMember(entityType.getId(entityType.getIdType().getJavaType()), reference, id);
+        return reference;
+    }
+
+    /**
+     *  Enum class is loaded without initialization and must be enum
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readEnum(String className, String name) {
+        try {
+            Class<?> clazz = Class.forName(className, false, Thread.currentThread().getContextClassLoader());
+            if (!clazz.isEnum()) {
+                throw new HibernateException("HS: Not an enum: " + className);
+            }
+            return Enum.valueOf((Class<Enum>) clazz, name);
+        } catch (ClassNotFoundException e) {
+            throw new HibernateException("HS: Unknown enum: " + className, e);
+        }
+    }
+
+    private static String readString(Reader in) {
+        int length = in.buffer.getInt(in.advance(4));
+        if (length < 0) {
+            return null;
+        }
+        in.checkRemaining(length);
+        return new String(in.buffer.getBytes(in.advance(length), in.pos), StandardCharsets.UTF_8);
+    }
+
+    //////////////////////////
+    //     METAMODEL
+    //////////////////////////
+
+    private ManagedType<?> managedType(String className) {
+        if (metamodel == null) {
+            throw new HibernateException("HS: Clustered entity transfer needs codec with metamodel: " + className);
+        }
+        return metamodel.getManagedTypes().stream()
+                .filter(type -> type.getJavaType() != null && type.getJavaType().getName().equals(className))
+                .findFirst()
+                .orElseThrow(() -> new HibernateException("HS: Not an entity or embeddable: " + className));
+    }
+
+    /**
+     *  Singular attributes by name, so both sides agree on order
+     */
+    private static List<SingularAttribute<?, ?>> attributesOf(ManagedType<?> type) {
+        return type.getSingularAttributes().stream()
+                .sorted(Comparator.comparing(Attribute::getName))
+                .collect(Collectors.toList());
+    }
+
+    private static Object instantiate(ManagedType<?> type) {
+        try {
+            Constructor<?> constructor = type.getJavaType().getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new HibernateException("HS: Can't instantiate: " + type.getJavaType().getName(), e);
+        }
+    }
+
+    private static Object readMember(Attribute<?, ?> attribute, Object target) {
+        Member member = attribute.getJavaMember();
+        try {
+            if (member instanceof Field) {
+                Field field = (Field) member;
+                field.setAccessible(true);
+                return field.get(target);
+            }
+            Method getter = (Method) member;
+            getter.setAccessible(true);
+            return getter.invoke(target);
+        } catch (ReflectiveOperationException e) {
+            throw new HibernateException("HS: Can't read attribute: " + attribute.getName(), e);
+        }
+    }
+
+    private static void writeMember(Attribute<?, ?> attribute, Object target, Object value) {
+        Member member = attribute.getJavaMember();
+        try {
+            if (member instanceof Field) {
+                Field field = (Field) member;
+                field.setAccessible(true);
+                field.set(target, value);
+                return;
+            }
+            String name = attribute.getName();
+            Method setter = member.getDeclaringClass().getDeclaredMethod(
+                    "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1), attribute.getJavaType());
+            setter.setAccessible(true);
+            setter.invoke(target, value);
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            throw new HibernateException("HS: Can't write attribute: " + attribute.getName(), e);
+        }
+    }
+
+    /**
+     *  Read position over wire buffer with bounds checks, so malformed lengths fail instead of allocating
+     */
+    private static class Reader {
+        private final Buffer buffer;
+        private int pos;
+
+        private Reader(Buffer buffer, int pos) {
+            this.buffer = buffer;
+            this.pos = pos;
+        }
+
+        private int advance(int length) {
+            checkRemaining(length);
+            int start = pos;
+            pos += length;
+            return start;
+        }
+
+        private void checkRemaining(int length) {
+            if (length < 0 || length > buffer.length() - pos) {
+                throw new HibernateException("HS: Malformed message: length " + length + " at " + pos);
+            }
+        }
+
+        private byte readByte() {
+            return buffer.getByte(advance(1));
+        }
+
+        private long readLong() {
+            return buffer.getLong(advance(8));
+        }
+
+        private int readCount() {
+            int count = buffer.getInt(advance(4));
+            checkRemaining(count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package hibernate.impl;
+
+import io.vertx.core.json.JsonObject;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *  Latency of worker tasks split to queue wait (submission to start on worker) and execution,
+ *  by operation and by named query. Recording doesn't allocate, except first record of each named query
+ */
+public class HibernateMetrics {
+    private final OperationMetrics[] operations = new OperationMetrics[HibernateOperation.values().length];
+    private final Map<String, OperationMetrics> namedQueries = new ConcurrentHashMap<>();
+
+    public HibernateMetrics() {
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new OperationMetrics();
+        }
+    }
+
+    /**
+     *  queryName - name of named query or null
+     */
+    public void record(HibernateOperation operation, String queryName, long waitNanos, long executionNanos) {
+        operations[operation.ordinal()].record(waitNanos, executionNanos);
+        if (queryName != null) {
+            namedQueries.computeIfAbsent(queryName, name -> new OperationMetrics()).record(waitNanos, executionNanos);
+        }
+    }
+
+    /**
+     *  Returns {"operations": {tag: {"wait": histogram, "execution": histogram}}, "named-queries": {name: ...}},
+     *  operations without records are skipped (see HibernateHistogram.snapshot())
+     */
+    public JsonObject snapshot() {
+        JsonObject operationsJson = new JsonObject();
+        for (HibernateOperation operation : HibernateOperation.values()) {
+            OperationMetrics metrics = operations[operation.ordinal()];
+            if (metrics.getExecution().getCount() > 0) {
+                operationsJson.put(operation.getTag(), metrics.toJson());
+            }
+        }
+        JsonObject namedQueriesJson = new JsonObject();
+        namedQueries.forEach((name, metrics) -> namedQueriesJson.put(name, metrics.toJson()));
+        return new JsonObject()
+                .put("operations", operationsJson)
+                .put("named-queries", namedQueriesJson);
+    }
+
+    @Getter
+    private static class OperationMetrics {
+        private final HibernateHistogram wait = new HibernateHistogram();
+        private final HibernateHistogram execution = new HibernateHistogram();
+
+        private void record(long waitNanos, long executionNanos) {
+            wait.record(waitNanos);
+            execution.record(executionNanos);
+        }
+
+        private JsonObject toJson() {
+            return new JsonObject()
+                    .put("wait", wait.snapshot())
+                    .put("execution", execution.snapshot());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package hibernate.impl;
+
+/**
+ *  Operation tag of worker task for HibernateMetrics
+ */
+public enum HibernateOperation {
+    PERSIST, MERGE, REMOVE, REFRESH, FIND, SELECT, FETCH, EXECUTE, FLUSH, CLEAR,
+    BEGIN, COMMIT, ROLLBACK, UNIT_OF_WORK, INSERT, UPDATE, DELETE, CREATE_SESSION, CLOSE, OTHER;
+
+    private final String tag = name().toLowerCase().replace('_', '-');
+
+    public String getTag() {
+        return tag;
+    }
+}
@@ -1,20 +1,38 @@
 package hibernate.impl;
 
 import hibernate.IHibernateQuery;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
 @Getter
-@RequiredArgsConstructor
+@EqualsAndHashCode(of = {"jpql", "name", "values"})
 public class HibernateQuery implements IHibernateQuery {
-    @NonNull
     private String jpql;
+    private String name;
     private Map<String, Object> values = new HashMap<>();
+    private long cacheTtl;
+    private long timeout;
+
+    public HibernateQuery(@NonNull String jpql) {
+        this.jpql = jpql;
+    }
+
+    private HibernateQuery() {
+    }
+
+    /**
+     *  Refers to query registered in HibernateService by name, instead of JPQL string
+     */
+    public static HibernateQuery named(@NonNull String name) {
+        HibernateQuery query = new HibernateQuery();
+        query.name = name;
+        return query;
+    }
 
     @Override
     public HibernateQuery put(String key, Object value) {
@@ -28,6 +46,32 @@ public class HibernateQuery implements IHibernateQuery {
     @Override
     public HibernateQuery setJpql(String jpql) {
         this.jpql = jpql;
+        this.name = null;
+        return this;
+    }
+
+    @Override
+    public HibernateQuery setCacheTtl(long cacheTtl) {
+        this.cacheTtl = cacheTtl;
+        return this;
+    }
+
+    @Override
+    public HibernateQuery setTimeout(long timeout) {
+        this.timeout = timeout;
         return this;
     }
+
+    /**
+     *  JDBC timeout in seconds: own timeout or defaultTimeout (ms) if not set, 0 - no timeout
+     */
+    int resolveTimeout(long defaultTimeout) {
+        long millis = timeout > 0 ? timeout : defaultTimeout;
+        return millis > 0 ? (int) ((millis + 999) / 1000) : 0;
+    }
+
+    @Override
+    public boolean isNamed() {
+        return name != null;
+    }
 }
@@ -0,0 +1,239 @@
+package hibernate.impl;
+
+import io.vertx.core.json.JsonObject;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  Service-wide LRU cache of select() results for queries with HibernateQuery.setCacheTtl(), bounded by total row count.
+ *  Key is normalized JPQL (or query name), result class and parameter values.
+ *  Entries are invalidated when entity of any type read by query is inserted, updated or deleted in any session
+ *  (on flush and again after commit, readers of other connections see old rows until then) and on bulk execute(),
+ *  results loaded before invalidation of their types are not cached.
+ *  Serves projections and read-only sessions (see HibernateSession.select()). Config key: "query-cache-max-rows" (0 - disabled)
+ */
+public class HibernateQueryCache implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+    public static final int DEFAULT_MAX_ROWS = 0;
+
+    private final int maxRows;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final HibernateGenerations generations = new HibernateGenerations();
+    private final Map<Key, CachedResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long rows;
+    private transient SessionFactoryImplementor sessionFactory;
+
+    public HibernateQueryCache(JsonObject config) {
+        this.maxRows = config.getInteger("query-cache-max-rows", DEFAULT_MAX_ROWS);
+    }
+
+    public boolean isEnabled() {
+        return maxRows > 0;
+    }
+
+    /**
+     *  Call it after EntityManagerFactory is built
+     */
+    protected void bind(SessionFactoryImplementor sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     *  Snapshots query on calling thread, so later changes of HibernateQuery values don't affect cached entry
+     */
+    public Object createKey(HibernateQuery query, String jpql, Class<?> clazz) {
+        String normalized = query.isNamed() ? "#" + query.getName() : jpql.trim().replaceAll("\\s+", " ");
+        Set<Class<?>> types = HibernateEntities.typesOf(sessionFactory, jpql);
+        return new Key(normalized, clazz, new HashMap<>(query.getValues()), types, generations.stamp(types));
+    }
+
+    /**
+     *  Returns new list of rows (entities are new detached instances) or null on miss
+     */
+    public <T> List<T> get(Object cacheKey, Class<T> clazz) {
+        CachedResult cached;
+        synchronized (entries) {
+            cached = entries.get(cacheKey);
+            if (cached != null && cached.getExpireAt() < System.currentTimeMillis()) {
+                remove((Key) cacheKey);
+                evictions.increment();
+                cached = null;
+            }
+        }
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        List<T> result = new ArrayList<>(cached.getRows().size());
+        for (Object row : cached.getRows()) {
+            if (row instanceof EntityRow) {
+                EntityRow entityRow = (EntityRow) row;
+                result.add(clazz.cast(HibernateEntities.restore(sessionFactory, entityRow.getClazz(), entityRow.getId(), entityRow.getState())));
+            } else {
+                result.add(clazz.cast(row));
+            }
+        }
+        return result;
+    }
+
+    /**
+     *  Result is skipped if any type read by query was invalidated after key creation, because it may be already stale
+     */
+    public void put(Object cacheKey, List<?> result, long ttl) {
+        Key key = (Key) cacheKey;
+        if (result.size() > maxRows || key.getStamp() != generations.stamp(key.getTypes())) {
+            return;
+        }
+        boolean entity = HibernateEntities.isEntity(sessionFactory, key.getResultClass());
+        List<Object> cachedRows = new ArrayList<>(result.size());
+        for (Object row : result) {
+            cachedRows.add(entity && row != null
+                    ? new EntityRow(row.getClass(), HibernateEntities.getIdentifier(sessionFactory, row), HibernateEntities.capture(sessionFactory, row))
+                    : row);
+        }
+        synchronized (entries) {
+            if (key.getStamp() != generations.stamp(key.getTypes())) {
+                return;
+            }
+            remove(key);
+            entries.put(key, new CachedResult(cachedRows, key.getTypes(), System.currentTimeMillis() + ttl));
+            rows += cachedRows.size();
+            Iterator<Map.Entry<Key, CachedResult>> eldest = entries.entrySet().iterator();
+            while (rows > maxRows && eldest.hasNext()) {
+                rows -= eldest.next().getValue().getRows().size();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     *  Drops results of queries which read clazz, or which entity types are unknown
+     */
+    public void invalidate(Class<?> clazz) {
+        synchronized (entries) {
+            generations.invalidate(clazz);
+            Iterator<CachedResult> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                CachedResult cached = iterator.next();
+                if (cached.getTypes() == null || cached.getTypes().contains(clazz)) {
+                    rows -= cached.getRows().size();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public void invalidateByJpql(String jpql) {
+        Set<Class<?>> types = HibernateEntities.typesOf(sessionFactory, jpql);
+        if (types == null) {
+            synchronized (entries) {
+                generations.invalidateAll();
+                entries.clear();
+                rows = 0;
+            }
+        } else {
+            types.forEach(this::invalidate);
+        }
+    }
+
+    public JsonObject getStatistics() {
+        JsonObject statistics = new JsonObject();
+        synchronized (entries) {
+            statistics.put("size", entries.size()).put("rows", rows);
+        }
+        return statistics
+                .put("hits", hits.sum())
+                .put("misses", misses.sum())
+                .put("evictions", evictions.sum());
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        invalidate(event.getPersister().getMappedClass());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        invalidate(event.getPersister().getMappedClass());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        invalidate(event.getPersister().getMappedClass());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        invalidate(event.getPersister().getMappedClass());
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        invalidate(event.getPersister().getMappedClass());
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        invalidate(event.getPersister().getMappedClass());
+    }
+
+    /**
+     *  Registered for both flush (POST_INSERT, ...) and commit (POST_COMMIT_INSERT, ...) events
+     */
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return true;
+    }
+
+    private void remove(Key key) {
+        CachedResult removed = entries.remove(key);
+        if (removed != null) {
+            rows -= removed.getRows().size();
+        }
+    }
+
+    @Value
+    private static class Key {
+        String query;
+        Class<?> resultClass;
+        Map<String, Object> values;
+        @EqualsAndHashCode.Exclude
+        Set<Class<?>> types;
+        @EqualsAndHashCode.Exclude
+        long stamp;
+    }
+
+    @Value
+    private static class EntityRow {
+        Class<?> clazz;
+        Object id;
+        Object[] state;
+    }
+
+    @Value
+    private static class CachedResult {
+        List<Object> rows;
+        Set<Class<?>> types;
+        long expireAt;
+    }
+}
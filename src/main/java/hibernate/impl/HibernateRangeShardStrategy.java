@@ -0,0 +1,41 @@
+package hibernate.impl;
+
+import hibernate.IHibernateShardStrategy;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import lombok.NonNull;
+import org.hibernate.HibernateException;
+
+import java.util.Arrays;
+
+/**
+ *  Shard by numeric key range. "bounds" in strategy config are ascending exclusive upper bounds of all shards but last,
+ *  by example [1000000, 2000000] for 3 shards
+ */
+public class HibernateRangeShardStrategy implements IHibernateShardStrategy {
+    private long[] bounds;
+
+    @Override
+    public void init(JsonObject strategyConfig, int shardCount) {
+        JsonArray boundsJson = strategyConfig.getJsonArray("bounds", new JsonArray());
+        if (boundsJson.size() != shardCount - 1) {
+            throw new HibernateException("HS: Range shard strategy needs " + (shardCount - 1) + " bounds: " + boundsJson);
+        }
+        this.bounds = new long[boundsJson.size()];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = boundsJson.getLong(i);
+            if (i > 0 && bounds[i] <= bounds[i - 1]) {
+                throw new HibernateException("HS: Range shard bounds must ascend: " + boundsJson);
+            }
+        }
+    }
+
+    @Override
+    public int shardOf(@NonNull Object shardKey) {
+        if (!(shardKey instanceof Number)) {
+            throw new HibernateException("HS: Range shard key must be a number: " + shardKey);
+        }
+        int position = Arrays.binarySearch(bounds, ((Number) shardKey).longValue());
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+}
@@ -0,0 +1,72 @@
+package hibernate.impl;
+
+import org.hibernate.HibernateException;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ *  Chooses read replica for every read of read-only sessions.
+ *  "read-routing" config key: "round-robin" (default) or "least-in-flight" (replica with fewest running reads)
+ */
+public class HibernateReplicaRouter {
+    public static final String ROUND_ROBIN = "round-robin";
+    public static final String LEAST_IN_FLIGHT = "least-in-flight";
+
+    private final List<EntityManagerFactory> factories;
+    private final boolean leastInFlight;
+    private final AtomicInteger counter = new AtomicInteger();
+    private final AtomicIntegerArray inFlight;
+
+    public HibernateReplicaRouter(List<EntityManagerFactory> factories, String routing) {
+        if (!ROUND_ROBIN.equals(routing) && !LEAST_IN_FLIGHT.equals(routing)) {
+            throw new HibernateException("HS: Unknown read-routing: " + routing);
+        }
+        this.factories = factories;
+        this.leastInFlight = LEAST_IN_FLIGHT.equals(routing);
+        this.inFlight = new AtomicIntegerArray(factories.size());
+    }
+
+    public int size() {
+        return factories.size();
+    }
+
+    public EntityManagerFactory getFactory(int replica) {
+        return factories.get(replica);
+    }
+
+    /**
+     *  Returns index of chosen replica, call release() after read
+     */
+    public int acquire() {
+        int replica = leastInFlight ? leastLoaded() : Math.floorMod(counter.getAndIncrement(), factories.size());
+        inFlight.incrementAndGet(replica);
+        return replica;
+    }
+
+    public void release(int replica) {
+        inFlight.decrementAndGet(replica);
+    }
+
+    public void close() {
+        factories.forEach(factory -> {
+            if (factory.isOpen()) {
+                factory.close();
+            }
+        });
+    }
+
+    private int leastLoaded() {
+        int start = Math.floorMod(counter.getAndIncrement(), factories.size());
+        int best = start;
+        for (int i = 1; i < factories.size(); i++) {
+            int replica = (start + i) % factories.size();
+            if (inFlight.get(replica) < inFlight.get(best)) {
+                best = replica;
+            }
+        }
+        return best;
+    }
+}
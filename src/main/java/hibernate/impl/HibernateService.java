@@ -1,66 +1,595 @@
 package hibernate.impl;
 
+import hibernate.IHibernateConnectionPool;
 import hibernate.IHibernateService;
+import hibernate.IHibernateShardStrategy;
+import hibernate.IHibernateSyncSession;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import lombok.AccessLevel;
 import lombok.Getter;
 import org.hibernate.HibernateException;
-import utils.vertx.VertxUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.service.spi.Stoppable;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
 
+import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.Persistence;
-import java.util.HashSet;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 @Getter(AccessLevel.PROTECTED)
 public class HibernateService implements IHibernateService {
     private static final Logger LOGGER = LoggerFactory.getLogger(HibernateService.class);
+    public static final int DEFAULT_JDBC_BATCH_SIZE = 50;
+    public static final int DEFAULT_MULTI_LOAD_BATCH_SIZE = 100;
+    public static final String BUILT_IN_POOL = "hibernate";
+    public static final String DEFAULT_POOL_NAME = "hibernate-pool";
+    public static final String HASH_SHARDING = "hash";
+    public static final String RANGE_SHARDING = "range";
+    public static final long DEFAULT_METRICS_INTERVAL = 10000L;
 
     private io.vertx.reactivex.core.Vertx vertx;
     private JsonObject config;
+    private HibernateExecutor executor;
     private EntityManagerFactory entityManagerFactory;
-    private HashSet<HibernateSession> sessions;
+    private IHibernateConnectionPool connectionPool;
+    private Set<HibernateSession> sessions;
+    private HibernateSessionPool sessionPool;
+    private Set<HibernateStatelessSession> statelessSessions;
+    private int jdbcBatchSize;
+    private int multiLoadBatchSize;
+    private long findCoalescingWindow;
+    private long queryTimeout;
+    private Map<String, JsonObject> namedQueries;
+    private HibernateEntityCache entityCache;
+    private HibernateQueryCache queryCache;
+    private HibernateSlowQueryLog slowQueryLog;
+    private HibernateReplicaRouter replicaRouter;
+    private List<EntityManagerFactory> shards;
+    private IHibernateShardStrategy shardStrategy;
+    private HibernateEventBusEndpoint endpoint;
+    private boolean readYourWrites;
+    private long metricsTimer = -1;
+    private HibernateBootstrap bootstrap;
+    private JsonObject startupTimings = new JsonObject();
 
     public HibernateService(Vertx vertx, JsonObject config) {
         this.config = config;
         this.vertx = io.vertx.reactivex.core.Vertx.newInstance(vertx);
-        this.sessions = new HashSet<>();
+        this.sessions = ConcurrentHashMap.newKeySet();
+        this.statelessSessions = ConcurrentHashMap.newKeySet();
+        this.sessionPool = new HibernateSessionPool(this, config.getJsonObject("session-pool", new JsonObject()));
+        this.executor = new HibernateExecutor(this.vertx, config);
+        this.jdbcBatchSize = config.getInteger("jdbc-batch-size", DEFAULT_JDBC_BATCH_SIZE);
+        this.multiLoadBatchSize = config.getInteger("multi-load-batch-size", DEFAULT_MULTI_LOAD_BATCH_SIZE);
+        this.findCoalescingWindow = config.getLong("find-coalescing-window", -1L);
+        this.queryTimeout = config.getLong("query-timeout", 0L);
+        this.readYourWrites = config.getBoolean("read-your-writes", true);
+        this.entityCache = new HibernateEntityCache(config);
+        this.queryCache = new HibernateQueryCache(config);
+        this.slowQueryLog = new HibernateSlowQueryLog(this.vertx, executor, config, this::resolveJpql);
+        this.namedQueries = new ConcurrentHashMap<>();
+        config.getJsonObject("named-queries", new JsonObject()).forEach(entry -> {
+            Object definition = entry.getValue();
+            namedQueries.put(entry.getKey(), definition instanceof JsonObject
+                    ? (JsonObject) definition
+                    : new JsonObject().put("jpql", String.valueOf(definition)));
+        });
+    }
+
+    @Override
+    public HibernateService registerNamedQuery(String name, String jpql) {
+        return registerNamedQuery(name, jpql, new JsonObject());
+    }
+
+    @Override
+    public HibernateService registerNamedQuery(String name, String jpql, JsonObject warmUpParams) {
+        if (entityManagerFactory != null) {
+            throw new HibernateException("HS: Named query must be registered before start: " + name);
+        }
+        namedQueries.put(name, new JsonObject().put("jpql", jpql).put("warm-up-params", warmUpParams));
+        return this;
     }
 
     @Override
     public Completable start() {
-        Maybe<Boolean> startMaybe = VertxUtils.rxExecuteAndComplete(vertx, () -> {
+        Maybe<Boolean> startMaybe = executor.rxExecuteAndComplete(() -> {
             LOGGER.info("----- HS: Startup");
+            long startTime = System.nanoTime();
             String persistenceUnit = config.getString("persistence-unit");
             if (persistenceUnit == null) {
                 throw new HibernateException("HS: No persistence-unit specified in config: ");
             }
-            this.entityManagerFactory = Persistence.createEntityManagerFactory(persistenceUnit);
+            this.connectionPool = createConnectionPool(null, "max-size");
+            this.bootstrap = new HibernateBootstrap(config);
+            this.entityManagerFactory = buildUnit(persistenceUnit, connectionPool, false);
+            try {
+                bindCaches();
+                long phaseTime = System.nanoTime();
+                compileNamedQueries(entityManagerFactory);
+                JsonObject timings = new JsonObject().put("units", bootstrap.getTimings())
+                        .put("named-queries", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseTime));
+                this.replicaRouter = createReplicaRouter();
+                this.shards = createShards();
+                this.shardStrategy = createShardStrategy();
+                bootstrap.saveCache();
+                phaseTime = System.nanoTime();
+                if (config.getBoolean("warm-up", true)) {
+                    warmUpNamedQueries();
+                }
+                this.startupTimings = timings.put("warm-up", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseTime))
+                        .put("total", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            } catch (RuntimeException e) {
+                closeUnits();
+                this.replicaRouter = null;
+                this.shards = null;
+                this.entityManagerFactory = null;
+                throw e;
+            }
         });
         return Completable.fromMaybe(startMaybe)
-                .doOnComplete(() -> LOGGER.info("----- HS: Init done"))
+                .doOnComplete(sessionPool::start)
+                .doOnComplete(this::startMetricsPublishing)
+                .doOnComplete(slowQueryLog::start)
+                .doOnComplete(this::startEndpoint)
+                .doOnComplete(() -> executor.rxExecuteAndComplete(bootstrap::validateSchemas)
+                        .subscribe(validated -> { }, e -> LOGGER.error("HS: " + e)))
+                .doOnComplete(() -> LOGGER.info("----- HS: Init done " + startupTimings.encode()))
                 .doOnError(t -> LOGGER.info("----- HS: Init failed"));
     }
 
     @Override
     public Completable stop() {
-        Maybe<Boolean> stopMaybe = VertxUtils.rxExecuteAndComplete(vertx, () -> {
+        Maybe<Boolean> stopMaybe = executor.rxExecuteAndComplete(() -> {
             LOGGER.info("----- HS: Stop Hibernate service");
-            sessions.forEach(HibernateSession::close);
+            if (metricsTimer >= 0) {
+                vertx.cancelTimer(metricsTimer);
+            }
+            if (endpoint != null) {
+                endpoint.stop();
+            }
+            sessionPool.stop();
+            slowQueryLog.stop();
+            sessions.forEach(session -> {
+                try {
+                    session.closeSession();
+                } catch (HibernateException e) {
+                    LOGGER.error("HS: Can't close session: " + session.getId());
+                }
+            });
             sessions.clear();
+            statelessSessions.forEach(HibernateStatelessSession::closeSession);
+            statelessSessions.clear();
+            closeUnits();
         });
         return Completable.fromMaybe(stopMaybe)
+                .doFinally(executor::close)
                 .doOnComplete(() -> LOGGER.info("----- HS: Destroy done"))
                 .doOnError(t -> LOGGER.info("----- HS: Destroy failed"));
     }
 
     @Override
     public Single<HibernateSession> createSession() {
-        return VertxUtils.rxExecuteAndSupply(vertx, () -> new HibernateSession(this)).toSingle();
+        return createSession(false);
+    }
+
+    @Override
+    public Single<HibernateSession> createSession(boolean replicaReads) {
+        return createSession(0, replicaReads, false);
+    }
+
+    @Override
+    public Single<HibernateSession> createReadOnlySession() {
+        return createSession(0, true, true);
+    }
+
+    @Override
+    public Single<HibernateSession> createShardSession(Object shardKey) {
+        return Single.defer(() -> createSession(shardStrategy.shardOf(shardKey), false, false));
+    }
+
+    @Override
+    public <T> Flowable<T> scatterSelect(HibernateQuery jpqlQuery, Class<T> clazz) {
+        return Flowable.defer(() -> {
+            Comparator<T> order = HibernateEntities.orderOf(entityManagerFactory.getMetamodel(), clazz, resolveJpql(jpqlQuery));
+            List<Single<List<T>>> results = new ArrayList<>();
+            for (int shard = 0; shard < shards.size(); shard++) {
+                results.add(createSession(shard, false, true).flatMap(session -> session.select(jpqlQuery, clazz).toList()
+                        .flatMap(rows -> session.close().toSingleDefault(rows))
+                        .onErrorResumeNext(e -> session.close().onErrorComplete().andThen(Single.<List<T>>error(e)))));
+            }
+            if (order == null) {
+                return Single.merge(results).flatMapIterable(rows -> rows);
+            }
+            return Single.zip(results, rows -> mergeSorted(rows, order)).flattenAsFlowable(rows -> rows);
+        });
+    }
+
+    @Override
+    public int getShardCount() {
+        return shards == null ? 1 : shards.size();
+    }
+
+    private Single<HibernateSession> createSession(int shard, boolean replicaReads, boolean readOnly) {
+        return executor.rxExecuteAndSupply(HibernateOperation.CREATE_SESSION,
+                () -> new HibernateSession(this, replicaReads, readOnly, shard)).toSingle();
+    }
+
+    @Override
+    public Single<HibernateSession> borrowSession() {
+        return sessionPool.borrow();
+    }
+
+    @Override
+    public Completable release(HibernateSession session) {
+        return sessionPool.release(session);
+    }
+
+    @Override
+    public <R> Single<R> transact(Function<IHibernateSyncSession, R> work) {
+        return transact(work, 0);
+    }
+
+    @Override
+    public <R> Single<R> transact(Function<IHibernateSyncSession, R> work, int maxRetries) {
+        return borrowSession().flatMap(session -> session.inUnitOfWork(work, maxRetries)
+                .flatMap(result -> release(session).toSingleDefault(result))
+                .onErrorResumeNext(e -> release(session).onErrorComplete().andThen(Single.error(e))));
+    }
+
+    @Override
+    public Single<HibernateStatelessSession> createStatelessSession() {
+        return executor.rxExecuteAndSupply(HibernateOperation.CREATE_SESSION, () -> new HibernateStatelessSession(this)).toSingle();
+    }
+
+    @Override
+    public JsonObject getEntityCacheStatistics() {
+        return entityCache.getStatistics();
+    }
+
+    @Override
+    public JsonObject getQueryCacheStatistics() {
+        return queryCache.getStatistics();
+    }
+
+    @Override
+    public JsonObject getConnectionPoolMetrics() {
+        return connectionPool == null ? new JsonObject() : connectionPool.getMetrics();
+    }
+
+    @Override
+    public JsonObject getStatistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            return new JsonObject();
+        }
+        JsonObject queries = new JsonObject();
+        for (String jpql : statistics.getQueries()) {
+            QueryStatistics query = statistics.getQueryStatistics(jpql);
+            queries.put(jpql, new JsonObject()
+                    .put("executions", query.getExecutionCount())
+                    .put("rows", query.getExecutionRowCount())
+                    .put("avg-time", query.getExecutionAvgTime())
+                    .put("max-time", query.getExecutionMaxTime())
+                    .put("cache-hits", query.getCacheHitCount())
+                    .put("cache-misses", query.getCacheMissCount()));
+        }
+        return new JsonObject()
+                .put("sessions-opened", statistics.getSessionOpenCount())
+                .put("transactions", statistics.getTransactionCount())
+                .put("statements", statistics.getPrepareStatementCount())
+                .put("flushes", statistics.getFlushCount())
+                .put("entity-loads", statistics.getEntityLoadCount())
+                .put("entity-fetches", statistics.getEntityFetchCount())
+                .put("collection-loads", statistics.getCollectionLoadCount())
+                .put("collection-fetches", statistics.getCollectionFetchCount())
+                .put("query-executions", statistics.getQueryExecutionCount())
+                .put("query-max-time", statistics.getQueryExecutionMaxTime())
+                .put("query-max-time-jpql", statistics.getQueryExecutionMaxTimeQueryString())
+                .put("second-level-cache-hits", statistics.getSecondLevelCacheHitCount())
+                .put("second-level-cache-misses", statistics.getSecondLevelCacheMissCount())
+                .put("query-cache-hits", statistics.getQueryCacheHitCount())
+                .put("query-cache-misses", statistics.getQueryCacheMissCount())
+                .put("queries", queries)
+                .put("entity-cache", entityCache.getStatistics())
+                .put("query-cache", queryCache.getStatistics());
+    }
+
+    @Override
+    public JsonObject metrics() {
+        return executor.getMetrics().snapshot();
+    }
+
+    @Override
+    public JsonObject getStartupTimings() {
+        return startupTimings.copy();
+    }
+
+    /**
+     *  Serves HibernateEventBusSession clients on "event-bus-address", if address is set
+     */
+    private void startEndpoint() {
+        String address = config.getString("event-bus-address");
+        if (address != null) {
+            endpoint = new HibernateEventBusEndpoint(this, address);
+            endpoint.start();
+        }
+    }
+
+    /**
+     *  Publishes metrics() snapshot to "metrics-address" every "metrics-interval" ms, if address is set
+     */
+    private void startMetricsPublishing() {
+        String address = config.getString("metrics-address");
+        if (address != null) {
+            long interval = config.getLong("metrics-interval", DEFAULT_METRICS_INTERVAL);
+            metricsTimer = vertx.setPeriodic(interval, id -> vertx.eventBus().publish(address, metrics()));
+        }
+    }
+
+    /**
+     *  Returns JPQL string of named or plain query
+     */
+    protected String resolveJpql(HibernateQuery query) {
+        if (!query.isNamed()) {
+            return query.getJpql();
+        }
+        JsonObject definition = namedQueries.get(query.getName());
+        if (definition == null) {
+            throw new HibernateException("HS: Unknown named query: " + query.getName());
+        }
+        return definition.getString("jpql");
+    }
+
+    /**
+     *  Pool size defaults to worker pool size, so every worker holding EntityManager can get connection.
+     *  Replica and shard pools are named "<name>-replica-<index>" and "<name>-shard-<index>" and sized
+     *  by "replica-max-size" and "shard-max-size" (default "max-size"), every unit holds its own connections.
+     *  "connection-pool.provider" = "hibernate" keeps connection settings of persistence unit
+     */
+    private IHibernateConnectionPool createConnectionPool(String nameSuffix, String sizeKey) {
+        JsonObject poolConfig = config.getJsonObject("connection-pool", new JsonObject()).copy();
+        String provider = poolConfig.getString("provider", HikariConnectionPool.class.getName());
+        if (BUILT_IN_POOL.equals(provider)) {
+            return null;
+        }
+        int maxSize = poolConfig.getInteger(sizeKey, poolConfig.getInteger("max-size", executor.getPoolSize()));
+        poolConfig.put("max-size", maxSize);
+        if (nameSuffix != null) {
+            poolConfig.put("name", poolConfig.getString("name", DEFAULT_POOL_NAME) + "-" + nameSuffix);
+        }
+        try {
+            IHibernateConnectionPool pool = (IHibernateConnectionPool) Class.forName(provider).newInstance();
+            pool.init(poolConfig, maxSize);
+            return pool;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new HibernateException("HS: Can't create connection pool: " + provider, e);
+        }
+    }
+
+    /**
+     *  Pool is stopped if EntityManagerFactory is not built, otherwise factory stops it on close.
+     *  Connections of read-only unit (replica) are in autocommit mode, so reads outside of transaction
+     *  don't leave implicit transaction open on connection
+     */
+    private EntityManagerFactory buildUnit(String persistenceUnit, IHibernateConnectionPool pool, boolean readOnlyUnit) {
+        try {
+            return bootstrap.build(persistenceUnit, createProperties(pool, readOnlyUnit));
+        } catch (RuntimeException e) {
+            if (pool instanceof Stoppable) {
+                ((Stoppable) pool).stop();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     *  Closes built units: on stop and on failed start, which may have built only some of them
+     */
+    private void closeUnits() {
+        if (replicaRouter != null) {
+            replicaRouter.close();
+        }
+        if (shards != null) {
+            shards.stream().skip(1).filter(EntityManagerFactory::isOpen).forEach(EntityManagerFactory::close);
+        }
+        if (entityManagerFactory != null && entityManagerFactory.isOpen()) {
+            entityManagerFactory.close();
+        }
+    }
+
+    private void bindCaches() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        EventListenerRegistry listeners = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        if (entityCache.isEnabled()) {
+            entityCache.bind(sessionFactory);
+            listeners.appendListeners(EventType.POST_UPDATE, entityCache);
+            listeners.appendListeners(EventType.POST_DELETE, entityCache);
+            listeners.appendListeners(EventType.POST_COMMIT_UPDATE, entityCache);
+            listeners.appendListeners(EventType.POST_COMMIT_DELETE, entityCache);
+        }
+        if (queryCache.isEnabled()) {
+            queryCache.bind(sessionFactory);
+            listeners.appendListeners(EventType.POST_INSERT, queryCache);
+            listeners.appendListeners(EventType.POST_UPDATE, queryCache);
+            listeners.appendListeners(EventType.POST_DELETE, queryCache);
+            listeners.appendListeners(EventType.POST_COMMIT_INSERT, queryCache);
+            listeners.appendListeners(EventType.POST_COMMIT_UPDATE, queryCache);
+            listeners.appendListeners(EventType.POST_COMMIT_DELETE, queryCache);
+        }
+    }
+
+    /**
+     *  Read replicas are persistence units listed in "read-persistence-units", each gets its own connection pool
+     */
+    private HibernateReplicaRouter createReplicaRouter() {
+        JsonArray units = config.getJsonArray("read-persistence-units", new JsonArray());
+        if (units.isEmpty()) {
+            return null;
+        }
+        List<EntityManagerFactory> replicas = new ArrayList<>();
+        try {
+            for (Object unit : units) {
+                IHibernateConnectionPool pool = createConnectionPool("replica-" + replicas.size(), "replica-max-size");
+                EntityManagerFactory replica = buildUnit(String.valueOf(unit), pool, true);
+                replicas.add(replica);
+                compileNamedQueries(replica);
+            }
+            return new HibernateReplicaRouter(replicas, config.getString("read-routing", HibernateReplicaRouter.ROUND_ROBIN));
+        } catch (RuntimeException e) {
+            replicas.forEach(EntityManagerFactory::close);
+            throw e;
+        }
+    }
+
+    /**
+     *  Shard 0 is primary persistence unit, others are listed in "shard-persistence-units".
+     *  Entity and query caches and read replicas serve only shard 0
+     */
+    private List<EntityManagerFactory> createShards() {
+        List<EntityManagerFactory> factories = new ArrayList<>();
+        factories.add(entityManagerFactory);
+        try {
+            for (Object unit : config.getJsonArray("shard-persistence-units", new JsonArray())) {
+                IHibernateConnectionPool pool = createConnectionPool("shard-" + factories.size(), "shard-max-size");
+                EntityManagerFactory shard = buildUnit(String.valueOf(unit), pool, false);
+                factories.add(shard);
+                compileNamedQueries(shard);
+            }
+            return factories;
+        } catch (RuntimeException e) {
+            factories.stream().skip(1).forEach(EntityManagerFactory::close);
+            throw e;
+        }
+    }
+
+    private IHibernateShardStrategy createShardStrategy() {
+        JsonObject strategyConfig = config.getJsonObject("shard-strategy", new JsonObject());
+        String provider = strategyConfig.getString("provider", HASH_SHARDING);
+        if (HASH_SHARDING.equals(provider)) {
+            provider = HibernateHashShardStrategy.class.getName();
+        } else if (RANGE_SHARDING.equals(provider)) {
+            provider = HibernateRangeShardStrategy.class.getName();
+        }
+        try {
+            IHibernateShardStrategy strategy = (IHibernateShardStrategy) Class.forName(provider).newInstance();
+            strategy.init(strategyConfig, shards.size());
+            return strategy;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new HibernateException("HS: Can't create shard strategy: " + provider, e);
+        }
+    }
+
+    /**
+     *  k-way merge of sorted shard results
+     */
+    private static <T> List<T> mergeSorted(Object[] sortedLists, Comparator<T> order) {
+        List<List<T>> lists = new ArrayList<>();
+        int total = 0;
+        for (Object sorted : sortedLists) {
+            @SuppressWarnings("unchecked")
+            List<T> list = (List<T>) sorted;
+            lists.add(list);
+            total += list.size();
+        }
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> order.compare(lists.get(a[0]).get(a[1]), lists.get(b[0]).get(b[1])));
+        for (int i = 0; i < lists.size(); i++) {
+            if (!lists.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+        List<T> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<T> list = lists.get(head[0]);
+            merged.add(list.get(head[1]));
+            if (++head[1] < list.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private void compileNamedQueries(EntityManagerFactory factory) {
+        EntityManager em = factory.createEntityManager();
+        try {
+            namedQueries.forEach((name, definition) -> {
+                try {
+                    factory.addNamedQuery(name, em.createQuery(definition.getString("jpql")));
+                } catch (IllegalArgumentException e) {
+                    throw new HibernateException("HS: Invalid named query: " + name, e);
+                }
+            });
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     *  Runs every SELECT named query once, so first requests don't pay for connection and plan warm-up.
+     *  Failures are only logged: queries are already validated
+     */
+    private void warmUpNamedQueries() {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            namedQueries.forEach((name, definition) -> {
+                if (!definition.getString("jpql").trim().toLowerCase().startsWith("select")) {
+                    return;
+                }
+                try {
+                    Query query = em.createNamedQuery(name).setMaxResults(1);
+                    definition.getJsonObject("warm-up-params", new JsonObject()).forEach(param ->
+                            query.setParameter(param.getKey(), param.getValue()));
+                    query.getResultList();
+                    em.clear();
+                } catch (Exception e) {
+                    LOGGER.warn("HS: Warm-up of named query failed: " + name + ": " + e);
+                }
+            });
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     *  Overrides persistence.xml properties with service config
+     */
+    private Map<String, Object> createProperties(IHibernateConnectionPool pool, boolean readOnlyUnit) {
+        Map<String, Object> properties = new HashMap<>();
+        if (readOnlyUnit) {
+            properties.put(AvailableSettings.AUTOCOMMIT, "true");
+        }
+        properties.put(AvailableSettings.STATEMENT_BATCH_SIZE, String.valueOf(jdbcBatchSize));
+        properties.put(AvailableSettings.ORDER_INSERTS, "true");
+        properties.put(AvailableSettings.ORDER_UPDATES, "true");
+        if (config.getBoolean("statistics", false)) {
+            properties.put(AvailableSettings.GENERATE_STATISTICS, "true");
+        }
+        if (pool != null) {
+            properties.put(AvailableSettings.CONNECTION_PROVIDER, pool);
+        }
+        return properties;
     }
 }
\ No newline at end of file
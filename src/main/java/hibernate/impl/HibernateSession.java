@@ -1,59 +1,167 @@
 package hibernate.impl;
 
 import hibernate.IHibernateSession;
+import hibernate.IHibernateSyncSession;
 import hu.akarnokd.rxjava2.interop.ObservableInterop;
 import io.netty.util.internal.ThreadLocalRandom;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.buffer.Buffer;
+import io.vertx.reactivex.core.streams.WriteStream;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.FlushMode;
 import org.hibernate.HibernateException;
-import utils.vertx.VertxUtils;
+import org.hibernate.JDBCException;
+import org.hibernate.QueryTimeoutException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.StaleStateException;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.exception.LockAcquisitionException;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PessimisticLockException;
 import javax.persistence.Query;
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
 import javax.persistence.TypedQuery;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Getter
 @Setter
 @EqualsAndHashCode(of = "id")
 public class HibernateSession implements IHibernateSession {
     private static final Logger LOGGER = LoggerFactory.getLogger(HibernateSession.class);
+    private static final Pattern WHERE_PATTERN = Pattern.compile("(?i)\\bwhere\\b");
+    private static final Pattern WHERE_END_PATTERN = Pattern.compile("(?i)\\b(?:group\\s+by|having)\\b");
+    private static final Pattern ORDER_BY_PATTERN = Pattern.compile("(?i)\\border\\s+by\\b");
+    private static final Pattern KEY_PATH_PATTERN = Pattern.compile("\\w+\\.\\w+");
+    private static final String LAST_KEY_PARAM = "hsLastKey";
+    /**
+     *  SQL states of serialization failure and deadlock (PostgreSQL)
+     */
+    private static final List<String> RETRYABLE_SQL_STATES = Arrays.asList("40001", "40P01");
+    /**
+     *  SQL state of statement cancelled by timeout or cancel() (H2, PostgreSQL, DB2)
+     */
+    private static final String QUERY_CANCELED_SQL_STATE = "57014";
 
     private String id;
     private HibernateService service;
     private Vertx vertx;
+    @Setter(AccessLevel.NONE)
+    private HibernateLane lane;
     private EntityManager em;
     private EntityTransaction userTx;
+    @Setter(AccessLevel.NONE)
+    private HibernateFindCoalescer findCoalescer;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private HibernateSyncSession syncSession;
+    @Setter(AccessLevel.NONE)
+    private volatile boolean active;
+    /**
+     *  Read replica state, see HibernateService.createSession(replicaReads)
+     */
+    @Setter(AccessLevel.NONE)
+    private boolean replicaReads;
+    /**
+     *  Strict read-only mode, see HibernateService.createReadOnlySession()
+     */
+    @Setter(AccessLevel.NONE)
+    private boolean readOnly;
+    /**
+     *  Index of shard persistence unit, 0 - primary. Caches and replicas serve only primary
+     */
+    @Setter(AccessLevel.NONE)
+    private int shard;
+    /**
+     *  Default query timeout in ms for this session, 0 - none. Starts from "query-timeout" config key, HibernateQuery.setTimeout() overrides it
+     */
+    private long queryTimeout;
+    @Setter(AccessLevel.NONE)
+    private volatile boolean pinnedToPrimary;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private EntityManager[] replicaEms;
+    /**
+     *  Pool and leak detection state, see HibernateSessionPool
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private volatile boolean pooled;
+    @Setter(AccessLevel.PACKAGE)
+    private volatile boolean leakReported;
+    @Setter(AccessLevel.PACKAGE)
+    private volatile long acquiredAt;
+    @Setter(AccessLevel.PACKAGE)
+    private volatile long idleSince;
+    @Setter(AccessLevel.PACKAGE)
+    private volatile Throwable acquireStack;
 
     protected HibernateSession(HibernateService hibernateService) {
+        this(hibernateService, false, false, 0);
+    }
+
+    protected HibernateSession(HibernateService hibernateService, boolean replicaReads, boolean readOnly, int shard) {
+        this.replicaReads = replicaReads;
+        this.readOnly = readOnly;
+        this.shard = shard;
+        this.queryTimeout = hibernateService.getQueryTimeout();
         this.vertx = hibernateService.getVertx();
+        this.lane = hibernateService.getExecutor().createLane();
         this.service = hibernateService;
         this.id = generateSessionId();
-        this.em = hibernateService.getEntityManagerFactory().createEntityManager();
+        this.em = createEm(hibernateService.getShards().get(shard));
+        this.syncSession = new HibernateSyncSession(this);
+        this.active = true;
+        this.service.getSessionPool().acquired(this);
         this.service.getSessions().add(this);
+        if (hibernateService.getFindCoalescingWindow() >= 0) {
+            this.findCoalescer = new HibernateFindCoalescer(vertx, lane, hibernateService.getFindCoalescingWindow(), this::multiLoad);
+        }
     }
 
     @Override
     public Completable close() {
-        Maybe<Boolean> closeMaybe = VertxUtils.rxExecuteAndComplete(vertx, () -> {
-            service.getSessions().remove(this);
-            closeEm();
-        });
+        Maybe<Boolean> closeMaybe = lane.rxExecuteAndComplete(HibernateOperation.CLOSE, this::closeSession);
         return Completable.fromMaybe(closeMaybe);
     }
 
     @Override
     public Completable clear() {
-        Maybe<Boolean> clearMaybe = VertxUtils.rxExecuteAndComplete(vertx, () -> {
+        Maybe<Boolean> clearMaybe = lane.rxExecuteAndComplete(HibernateOperation.CLEAR, () -> {
             checkActive();
             em.clear();
         });
@@ -62,8 +170,11 @@ public class HibernateSession implements IHibernateSession {
 
     @Override
     public Completable flush() {
-        Maybe<Boolean> flushMaybe = VertxUtils.rxExecuteAndComplete(vertx, () -> {
+        Maybe<Boolean> flushMaybe = lane.rxExecuteAndComplete(HibernateOperation.FLUSH, () -> {
             checkActive();
+            if (readOnly) {
+                return;
+            }
             inTransaction(em::flush);
         });
         return Completable.fromMaybe(flushMaybe);
@@ -71,7 +182,8 @@ public class HibernateSession implements IHibernateSession {
 
     @Override
     public <T> Single<T> persist(T model) {
-        return VertxUtils.rxExecuteAndSupply(vertx, () -> {
+        return lane.rxExecuteAndSupply(HibernateOperation.PERSIST, () -> {
+            written();
             em.persist(model);
             return model;
         }).toSingle();
@@ -79,7 +191,8 @@ public class HibernateSession implements IHibernateSession {
 
     @Override
     public <T> Single<T> merge(T model) {
-        return VertxUtils.rxExecuteAndSupply(vertx, () -> {
+        return lane.rxExecuteAndSupply(HibernateOperation.MERGE, () -> {
+            written();
             em.merge(model);
             return model;
         }).toSingle();
@@ -87,7 +200,8 @@ public class HibernateSession implements IHibernateSession {
 
     @Override
     public <T> Single<T> remove(T model) {
-        return VertxUtils.rxExecuteAndSupply(vertx, () -> {
+        return lane.rxExecuteAndSupply(HibernateOperation.REMOVE, () -> {
+            written();
             em.remove(model);
             return model;
         }).toSingle();
@@ -95,25 +209,87 @@ public class HibernateSession implements IHibernateSession {
 
     @Override
     public <T> Single<T> refresh(T model) {
-        return VertxUtils.rxExecuteAndSupply(vertx, () -> {
+        return lane.rxExecuteAndSupply(HibernateOperation.REFRESH, () -> {
             em.refresh(model);
             return model;
         }).toSingle();
     }
 
+    @Override
+    public <T> Flowable<Long> persistAll(Iterable<T> models) {
+        return persistAll(Flowable.fromIterable(models), service.getJdbcBatchSize());
+    }
+
+    @Override
+    public <T> Flowable<Long> persistAll(Flowable<T> models, int batchSize) {
+        return writeAll(models, batchSize, HibernateOperation.PERSIST, em::persist);
+    }
+
+    @Override
+    public <T> Flowable<Long> mergeAll(Iterable<T> models) {
+        return mergeAll(Flowable.fromIterable(models), service.getJdbcBatchSize());
+    }
+
+    @Override
+    public <T> Flowable<Long> mergeAll(Flowable<T> models, int batchSize) {
+        return writeAll(models, batchSize, HibernateOperation.MERGE, em::merge);
+    }
+
     @Override
     public <T> Maybe<T> find(Class<T> clazz, Long id) {
-        return VertxUtils.rxExecuteAndSupply(vertx, () -> em.find(clazz, id));
+        if (useEntityCache()) {
+            T cached = service.getEntityCache().get(clazz, id);
+            if (cached != null) {
+                return Maybe.just(cached);
+            }
+        }
+        if (findCoalescer != null) {
+            return findCoalescer.find(clazz, id);
+        }
+        return lane.rxExecuteAndSupply(HibernateOperation.FIND, () -> onReader(reader -> {
+            if (!useEntityCache() || isManaged(reader, clazz, id)) {
+                return reader.find(clazz, id);
+            }
+            HibernateEntityCache entityCache = service.getEntityCache();
+            long stamp = entityCache.stamp(clazz);
+            T found = reader.find(clazz, id);
+            entityCache.put(clazz, id, found, stamp);
+            return found;
+        }));
+    }
+
+    @Override
+    public <T> Observable<T> findAll(Class<T> clazz, Collection<Long> ids) {
+        List<Long> idList = new ArrayList<>(ids);
+        return lane.rxExecuteAndSupply(HibernateOperation.FIND, () -> {
+            checkActive();
+            return onReader(reader -> multiLoad(reader, clazz, idList));
+        }).flatMapObservable(Observable::fromIterable);
     }
 
     @Override
     public <T> Observable<T> select(HibernateQuery jpqlQuery, Class<T> clazz) {
-        return VertxUtils.rxExecuteAndSupply(vertx, () -> {
-            String jpql = jpqlQuery.getJpql();
-            TypedQuery<T> selectQuery = em.createQuery(jpql, clazz);
-            jpqlQuery.getValues().forEach(selectQuery::setParameter);
-            return selectQuery.getResultStream();
-        }).flatMapObservable(ObservableInterop::fromStream);
+        HibernateQueryCache queryCache = service.getQueryCache();
+        if (shard == 0 && queryCache.isEnabled() && jpqlQuery.getCacheTtl() > 0 && (readOnly || !isEntity(clazz))) {
+            Object cacheKey = queryCache.createKey(jpqlQuery, service.resolveJpql(jpqlQuery), clazz);
+            List<T> cached = queryCache.get(cacheKey, clazz);
+            if (cached != null) {
+                return Observable.fromIterable(cached);
+            }
+            return lane.rxExecuteAndSupply(HibernateOperation.SELECT, jpqlQuery.getName(), () -> {
+                List<T> result = timedQuery(jpqlQuery, () -> onReader(reader -> createQuery(reader, jpqlQuery, clazz).getResultList()));
+                queryCache.put(cacheKey, result, jpqlQuery.getCacheTtl());
+                return result;
+            }, this::cancelQuery).flatMapObservable(Observable::fromIterable);
+        }
+        return Observable.defer(() -> {
+            AtomicLong startedAt = new AtomicLong();
+            return lane.rxExecuteAndSupply(HibernateOperation.SELECT, jpqlQuery.getName(), () -> {
+                startedAt.set(System.nanoTime());
+                return openQuery(() -> onReader(reader -> createQuery(reader, jpqlQuery, clazz).getResultStream()));
+            }, this::cancelQuery).flatMapObservable(ObservableInterop::fromStream)
+                    .doFinally(() -> recordQuery(jpqlQuery, startedAt.get()));
+        });
     }
 
     @Override
@@ -121,22 +297,126 @@ public class HibernateSession implements IHibernateSession {
         return select(new HibernateQuery(jpqlString), clazz);
     }
 
+    @Override
+    public Observable<JsonObject> selectJson(HibernateQuery jpqlQuery) {
+        return selectJsonArray(jpqlQuery)
+                .flatMapObservable(rows -> Observable.range(0, rows.size()).map(rows::getJsonObject));
+    }
+
+    @Override
+    public Single<JsonArray> selectJsonArray(HibernateQuery jpqlQuery) {
+        return lane.rxExecuteAndSupply(HibernateOperation.SELECT, jpqlQuery.getName(), () -> {
+            checkActive();
+            JsonArray rows = new JsonArray();
+            selectTuples(jpqlQuery).forEach(tuple -> rows.add(toJson(tuple)));
+            return rows;
+        }, this::cancelQuery).toSingle();
+    }
+
+    @Override
+    public Single<Buffer> selectJsonBuffer(HibernateQuery jpqlQuery) {
+        return lane.rxExecuteAndSupply(HibernateOperation.SELECT, jpqlQuery.getName(), () -> {
+            checkActive();
+            io.vertx.core.buffer.Buffer buffer = io.vertx.core.buffer.Buffer.buffer().appendByte((byte) '[');
+            List<Tuple> tuples = selectTuples(jpqlQuery);
+            for (int i = 0; i < tuples.size(); i++) {
+                if (i > 0) {
+                    buffer.appendByte((byte) ',');
+                }
+                buffer.appendBuffer(toJson(tuples.get(i)).toBuffer());
+            }
+            return Buffer.newInstance(buffer.appendByte((byte) ']'));
+        }, this::cancelQuery).toSingle();
+    }
+
+    @Override
+    public <T> Flowable<T> selectStream(HibernateQuery jpqlQuery, Class<T> clazz, int fetchSize) {
+        if (fetchSize <= 0) {
+            return Flowable.error(new HibernateException("HS: Fetch size must be positive: " + fetchSize));
+        }
+        boolean detach = isEntity(clazz);
+        return Flowable.defer(() -> {
+            AtomicLong startedAt = new AtomicLong();
+            return lane.rxScroll(jpqlQuery.getName(), () -> {
+                checkActive();
+                TypedQuery<T> selectQuery = createQuery(jpqlQuery, clazz);
+                startedAt.set(System.nanoTime());
+                return openQuery(() -> selectQuery.unwrap(org.hibernate.query.Query.class)
+                        .setFetchSize(fetchSize)
+                        .scroll(ScrollMode.FORWARD_ONLY));
+            }, row -> {
+                T entity = clazz.cast(row);
+                if (detach) {
+                    em.detach(entity);
+                }
+                return entity;
+            }, fetchSize, this::cancelQuery)
+                    .doFinally(() -> recordQuery(jpqlQuery, startedAt.get()));
+        });
+    }
+
+    @Override
+    public Single<Long> exportTo(HibernateQuery jpqlQuery, WriteStream<Buffer> stream, HibernateExporter.Format format) {
+        HibernateExporter exporter = new HibernateExporter(format, HibernateExporter.DEFAULT_CHUNK_SIZE, this::toJsonValue);
+        return lane.rxUsingCursor(jpqlQuery.getName(), () -> {
+            checkActive();
+            return openExport(jpqlQuery);
+        }, this::cancelQuery, results -> Flowable.defer(() -> lane.rxExecuteAndSupply(HibernateOperation.FETCH, jpqlQuery.getName(),
+                        () -> exporter.nextChunk(results)).toFlowable())
+                .repeat()
+                .takeUntil((Buffer chunk) -> exporter.isDone()))
+                .filter(chunk -> chunk.length() > 0)
+                .concatMapCompletable(chunk -> writeChunk(stream, chunk), 1)
+                .toSingle(exporter::getRows);
+    }
+
+    @Override
+    public <T> Flowable<List<T>> selectPages(HibernateQuery jpqlQuery, Class<T> clazz, String keyPath, int pageSize) {
+        if (pageSize <= 0) {
+            return Flowable.error(new HibernateException("HS: Page size must be positive: " + pageSize));
+        }
+        if (!isEntity(clazz)) {
+            return Flowable.error(new HibernateException("HS: Keyset pages must be entities: " + clazz.getName()));
+        }
+        if (!KEY_PATH_PATTERN.matcher(keyPath).matches()) {
+            return Flowable.error(new HibernateException("HS: Key path must be alias.attribute of selected entity: " + keyPath));
+        }
+        return Flowable.defer(() -> {
+            String jpql = service.resolveJpql(jpqlQuery);
+            if (ORDER_BY_PATTERN.matcher(maskNested(jpql)).find()) {
+                return Flowable.error(new HibernateException("HS: Keyset query must not contain ORDER BY: " + jpql));
+            }
+            AtomicReference<Object> lastKey = new AtomicReference<>();
+            return Flowable.defer(() -> nextPage(jpqlQuery, jpql, clazz, keyPath, pageSize, lastKey).toFlowable())
+                    .repeat()
+                    .takeUntil(page -> page.size() < pageSize)
+                    .filter(page -> !page.isEmpty());
+        });
+    }
+
     @Override
     public Single<Integer> execute(HibernateQuery jpqlQuery) {
-        return VertxUtils.rxExecuteAndSupply(vertx, () -> {
-            String jpql = jpqlQuery.getJpql();
-            Query executeQuery = em.createQuery(jpql);
-            jpqlQuery.getValues().forEach(executeQuery::setParameter);
-            return inTransactionReturn(executeQuery::executeUpdate);
-        }).toSingle();
+        return lane.rxExecuteAndSupply(HibernateOperation.EXECUTE, jpqlQuery.getName(), () -> {
+            written();
+            Query executeQuery = createQuery(jpqlQuery);
+            int rows = timedQuery(jpqlQuery, () -> inTransactionReturn(executeQuery::executeUpdate));
+            invalidateCaches(jpqlQuery);
+            if (userTx != null) {
+                // readers may cache rows of other connections until commit
+                em.unwrap(SessionImplementor.class).getActionQueue()
+                        .registerProcess((AfterTransactionCompletionProcess) (success, session) -> invalidateCaches(jpqlQuery));
+            }
+            return rows;
+        }, this::cancelQuery).toSingle();
     }
 
     @Override
     public Completable beginTransaction() {
-        Maybe<Boolean> beginTxMaybe = VertxUtils.rxExecuteAndComplete(vertx, () -> {
+        Maybe<Boolean> beginTxMaybe = lane.rxExecuteAndComplete(HibernateOperation.BEGIN, () -> {
             if (userTx != null) {
                 throw new HibernateException("HS: Transaction is already started: " + id);
             }
+            written();
             userTx = em.getTransaction();
             userTx.begin();
         });
@@ -145,7 +425,7 @@ public class HibernateSession implements IHibernateSession {
 
     @Override
     public Completable commitTransaction() {
-        Maybe<Boolean> commitTxMaybe = VertxUtils.rxExecuteAndComplete(vertx, () -> {
+        Maybe<Boolean> commitTxMaybe = lane.rxExecuteAndComplete(HibernateOperation.COMMIT, () -> {
             if (userTx == null) {
                 throw new HibernateException("HS: No active transaction: " + id);
             }
@@ -157,7 +437,7 @@ public class HibernateSession implements IHibernateSession {
 
     @Override
     public Completable rollbackTransaction() {
-        Maybe<Boolean> rollbackTxMaybe = VertxUtils.rxExecuteAndComplete(vertx, () -> {
+        Maybe<Boolean> rollbackTxMaybe = lane.rxExecuteAndComplete(HibernateOperation.ROLLBACK, () -> {
             if (userTx == null) {
                 throw new HibernateException("HS: No active transaction: " + id);
             }
@@ -167,14 +447,48 @@ public class HibernateSession implements IHibernateSession {
         return Completable.fromMaybe(rollbackTxMaybe);
     }
 
+    @Override
+    public <R> Single<R> inUnitOfWork(Function<IHibernateSyncSession, R> work) {
+        return inUnitOfWork(work, 0);
+    }
+
+    @Override
+    public <R> Single<R> inUnitOfWork(Function<IHibernateSyncSession, R> work, int maxRetries) {
+        return lane.rxExecuteAndSupply(HibernateOperation.UNIT_OF_WORK, () -> {
+            checkActive();
+            written();
+            if (userTx != null) {
+                return work.apply(syncSession);
+            }
+            for (int attempt = 0; ; attempt++) {
+                EntityTransaction tx = em.getTransaction();
+                try {
+                    tx.begin();
+                    R result = work.apply(syncSession);
+                    tx.commit();
+                    return result;
+                } catch (RuntimeException e) {
+                    if (tx.isActive()) {
+                        tx.rollback();
+                    }
+                    if (attempt >= maxRetries || !isRetryable(e)) {
+                        throw e;
+                    }
+                    LOGGER.debug("HS: Unit of work is retried: " + id + ": " + e);
+                    renewEm();
+                }
+            }
+        }).toSingle();
+    }
+
     @Override
     public Single<Boolean> isActive() {
-        return VertxUtils.rxExecuteAndSupply(vertx, this::isActiveSync).toSingle();
+        return lane.rxExecuteAndSupply(this::isActiveSync).toSingle();
     }
 
     @Override
     public boolean isActiveSync() {
-        return em != null && em.isOpen() && service.getSessions().contains(this);
+        return active && em != null && em.isOpen();
     }
 
     //////////////////////////
@@ -212,10 +526,437 @@ public class HibernateSession implements IHibernateSession {
         }
     }
 
+    /**
+     *  Records query time in slow query log, cancelled statement is rethrown as QueryTimeoutException
+     */
+    protected <T> T timedQuery(HibernateQuery jpqlQuery, Supplier<T> query) {
+        long start = System.nanoTime();
+        try {
+            return openQuery(query);
+        } finally {
+            recordQuery(jpqlQuery, start);
+        }
+    }
+
+    /**
+     *  Runs query or opens its stream or cursor, cancelled statement is rethrown as QueryTimeoutException.
+     *  Time of stream or cursor is recorded by caller when reading ends
+     */
+    private <T> T openQuery(Supplier<T> query) {
+        try {
+            return query.get();
+        } catch (JDBCException e) {
+            if (e instanceof QueryTimeoutException || !QUERY_CANCELED_SQL_STATE.equals(e.getSQLState())) {
+                throw e;
+            }
+            throw new QueryTimeoutException("HS: Query is timed out or cancelled", e.getSQLException(), e.getSQL());
+        }
+    }
+
+    /**
+     *  start - System.nanoTime() at query start, 0 - query is not started
+     */
+    private void recordQuery(HibernateQuery jpqlQuery, long start) {
+        if (start != 0) {
+            service.getSlowQueryLog().record(id, jpqlQuery, System.nanoTime() - start);
+        }
+    }
+
+    protected void invalidateCaches(HibernateQuery jpqlQuery) {
+        if (service.getEntityCache().isEnabled()) {
+            service.getEntityCache().invalidateByJpql(service.resolveJpql(jpqlQuery));
+        }
+        if (service.getQueryCache().isEnabled()) {
+            service.getQueryCache().invalidateByJpql(service.resolveJpql(jpqlQuery));
+        }
+    }
+
+    private static boolean isRetryable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof OptimisticLockException || cause instanceof PessimisticLockException
+                    || cause instanceof StaleStateException || cause instanceof LockAcquisitionException) {
+                return true;
+            }
+            if (cause instanceof SQLException && RETRYABLE_SQL_STATES.contains(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     *  Named queries are run by their JPQL, because named query can't be recreated with Tuple result
+     */
+    private List<Tuple> selectTuples(HibernateQuery jpqlQuery) {
+        String jpql = service.resolveJpql(jpqlQuery);
+        return timedQuery(jpqlQuery, () -> onReader(reader -> {
+            TypedQuery<Tuple> query = reader.createQuery(jpql, Tuple.class)
+                    .setHint(QueryHints.READ_ONLY, true);
+            jpqlQuery.getValues().forEach(query::setParameter);
+            applyTimeout(query, jpqlQuery);
+            return query.getResultList();
+        }));
+    }
+
+    private ScrollableResults openExport(HibernateQuery jpqlQuery) {
+        String jpql = service.resolveJpql(jpqlQuery);
+        return timedQuery(jpqlQuery, () -> onReader(reader -> {
+            TypedQuery<Tuple> query = reader.createQuery(jpql, Tuple.class)
+                    .setHint(QueryHints.READ_ONLY, true);
+            jpqlQuery.getValues().forEach(query::setParameter);
+            applyTimeout(query, jpqlQuery);
+            return query.unwrap(org.hibernate.query.Query.class)
+                    .setFetchSize(HibernateExporter.DEFAULT_FETCH_SIZE)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+        }));
+    }
+
+    /**
+     *  Completes when stream can take next chunk: at once, or on drain if write queue is full
+     */
+    private static Completable writeChunk(WriteStream<Buffer> stream, Buffer chunk) {
+        return Completable.create(emitter -> {
+            stream.write(chunk);
+            if (stream.writeQueueFull()) {
+                stream.exceptionHandler(emitter::tryOnError);
+                stream.drainHandler(v -> emitter.onComplete());
+            } else {
+                emitter.onComplete();
+            }
+        });
+    }
+
+    private JsonObject toJson(Tuple tuple) {
+        JsonObject row = new JsonObject();
+        List<TupleElement<?>> elements = tuple.getElements();
+        for (int i = 0; i < elements.size(); i++) {
+            String alias = elements.get(i).getAlias();
+            row.put(alias != null ? alias : String.valueOf(i), toJsonValue(tuple.get(i)));
+        }
+        return row;
+    }
+
+    private Object toJsonValue(Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean || value instanceof byte[]
+                || value instanceof Integer || value instanceof Long || value instanceof Double || value instanceof Float
+                || value instanceof Short || value instanceof Byte) {
+            return value;
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        if (value instanceof java.util.Date && !(value instanceof java.sql.Date) && !(value instanceof java.sql.Time)) {
+            return ((java.util.Date) value).toInstant().toString();
+        }
+        if (isEntity(value.getClass())) {
+            throw new HibernateException("HS: JSON projection must select scalar values, not entity: " + value.getClass().getName());
+        }
+        return value.toString();
+    }
+
+    private <T> Flowable<Long> writeAll(Flowable<T> models, int batchSize, HibernateOperation operation, Consumer<T> write) {
+        if (batchSize <= 0) {
+            return Flowable.error(new HibernateException("HS: Batch size must be positive: " + batchSize));
+        }
+        int flushSize = Math.min(batchSize, service.getJdbcBatchSize());
+        return models.buffer(batchSize)
+                .concatMapSingle(batch -> lane.rxExecuteAndSupply(operation, () -> {
+                    checkActive();
+                    written();
+                    inTransaction(() -> {
+                        for (int i = 0; i < batch.size(); i++) {
+                            write.accept(batch.get(i));
+                            if ((i + 1) % flushSize == 0) {
+                                em.flush();
+                                em.clear();
+                            }
+                        }
+                        em.flush();
+                    });
+                    em.clear();
+                    return (long) batch.size();
+                }).toSingle())
+                .scan(0L, Long::sum)
+                .skip(1);
+    }
+
+    /**
+     *  Runs read on read replica if session is read-only and not pinned to primary by write, otherwise on primary
+     */
+    private <T> T onReader(Function<EntityManager, T> read) {
+        HibernateReplicaRouter router = service.getReplicaRouter();
+        if (!replicaReads || pinnedToPrimary || userTx != null || router == null || shard != 0) {
+            return read.apply(em);
+        }
+        int replica = router.acquire();
+        try {
+            if (replicaEms == null) {
+                replicaEms = new EntityManager[router.size()];
+            }
+            if (replicaEms[replica] == null) {
+                replicaEms[replica] = createEm(router.getFactory(replica));
+            }
+            return read.apply(replicaEms[replica]);
+        } finally {
+            router.release(replica);
+        }
+    }
+
+    /**
+     *  Called before every write: rejects it in read-only session, pins session to primary for read-your-writes
+     */
+    private void written() {
+        if (readOnly) {
+            throw new HibernateException("HS: Session is read-only: " + id);
+        }
+        if (replicaReads && service.isReadYourWrites()) {
+            pinnedToPrimary = true;
+        }
+    }
+
+    /**
+     *  Replaces EntityManager after rolled back unit of work: its persistence context may be left inconsistent
+     *  by failed flush, so retry starts with fresh one
+     */
+    private void renewEm() {
+        EntityManager failed = em;
+        em = createEm(service.getShards().get(shard));
+        failed.close();
+    }
+
+    /**
+     *  Read-only EntityManager loads entities without dirty-check snapshots and is never flushed automatically
+     */
+    private EntityManager createEm(EntityManagerFactory factory) {
+        EntityManager created = factory.createEntityManager();
+        if (readOnly) {
+            Session hibernateSession = created.unwrap(Session.class);
+            hibernateSession.setDefaultReadOnly(true);
+            hibernateSession.setHibernateFlushMode(FlushMode.MANUAL);
+        }
+        return created;
+    }
+
+    /**
+     *  Entity cache serves only read-only sessions of primary shard: writes can't make cached copy stale for session itself
+     */
+    private boolean useEntityCache() {
+        return readOnly && shard == 0 && service.getEntityCache().isEnabled();
+    }
+
+    /**
+     *  Entity (or proxy) is in persistence context of reader, so find() must return it without cache
+     */
+    private boolean isManaged(EntityManager reader, Class<?> clazz, Long id) {
+        SessionImplementor session = reader.unwrap(SessionImplementor.class);
+        EntityKey key = session.generateEntityKey(id, session.getFactory().getMetamodel().entityPersister(clazz));
+        return session.getPersistenceContext().getEntity(key) != null || session.getPersistenceContext().getProxy(key) != null;
+    }
+
+    private <T> List<T> multiLoad(EntityManager reader, Class<T> clazz, List<Long> ids) {
+        List<T> found = new ArrayList<>(reader.unwrap(Session.class)
+                .byMultipleIds(clazz)
+                .withBatchSize(service.getMultiLoadBatchSize())
+                .multiLoad(ids));
+        found.removeIf(Objects::isNull);
+        return found;
+    }
+
+    private Map<Class<?>, Map<Long, Object>> multiLoad(Map<Class<?>, List<Long>> ids) {
+        checkActive();
+        return onReader(reader -> {
+            Map<Class<?>, Map<Long, Object>> loaded = new HashMap<>();
+            ids.forEach((clazz, classIds) -> {
+                long stamp = useEntityCache() ? service.getEntityCache().stamp(clazz) : 0;
+                Map<Long, Object> byId = new HashMap<>();
+                for (Object entity : multiLoad(reader, clazz, classIds)) {
+                    Long entityId = (Long) reader.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
+                    byId.put(entityId, entity);
+                    if (useEntityCache()) {
+                        service.getEntityCache().put(clazz, entityId, entity, stamp);
+                    }
+                }
+                loaded.put(clazz, byId);
+            });
+            return loaded;
+        });
+    }
+
+    protected <T> TypedQuery<T> createQuery(HibernateQuery jpqlQuery, Class<T> clazz) {
+        return createQuery(em, jpqlQuery, clazz);
+    }
+
+    private <T> TypedQuery<T> createQuery(EntityManager reader, HibernateQuery jpqlQuery, Class<T> clazz) {
+        TypedQuery<T> query = jpqlQuery.isNamed()
+                ? reader.createNamedQuery(jpqlQuery.getName(), clazz)
+                : reader.createQuery(jpqlQuery.getJpql(), clazz);
+        jpqlQuery.getValues().forEach(query::setParameter);
+        applyTimeout(query, jpqlQuery);
+        return query;
+    }
+
+    protected Query createQuery(HibernateQuery jpqlQuery) {
+        Query query = jpqlQuery.isNamed()
+                ? em.createNamedQuery(jpqlQuery.getName())
+                : em.createQuery(jpqlQuery.getJpql());
+        jpqlQuery.getValues().forEach(query::setParameter);
+        applyTimeout(query, jpqlQuery);
+        return query;
+    }
+
+    private void applyTimeout(Query query, HibernateQuery jpqlQuery) {
+        int timeout = jpqlQuery.resolveTimeout(queryTimeout);
+        if (timeout > 0) {
+            query.setHint(QueryHints.TIMEOUT_HIBERNATE, timeout);
+        }
+    }
+
+    /**
+     *  Called on disposing thread while query task runs on lane: cancels JDBC statement of running select
+     *  (Hibernate tracks last query statement only), so worker and connection are freed without waiting for result
+     */
+    private void cancelQuery() {
+        cancelQuery(em);
+        EntityManager[] replicas = replicaEms;
+        if (replicas != null) {
+            for (EntityManager replicaEm : replicas) {
+                cancelQuery(replicaEm);
+            }
+        }
+    }
+
+    private void cancelQuery(EntityManager target) {
+        if (target == null) {
+            return;
+        }
+        try {
+            target.unwrap(SessionImplementor.class).getJdbcCoordinator().cancelLastQuery();
+        } catch (RuntimeException e) {
+            LOGGER.warn("HS: Can't cancel query of session " + id + ": " + e);
+        }
+    }
+
+    private <T> Single<List<T>> nextPage(HibernateQuery jpqlQuery, String jpql, Class<T> clazz, String keyPath, int pageSize,
+                                         AtomicReference<Object> lastKey) {
+        return lane.rxExecuteAndSupply(HibernateOperation.SELECT, jpqlQuery.getName(), () -> {
+            checkActive();
+            return onReader(reader -> readPage(reader, jpqlQuery, jpql, clazz, keyPath, pageSize, lastKey));
+        }, this::cancelQuery).toSingle();
+    }
+
+    private <T> List<T> readPage(EntityManager reader, HibernateQuery jpqlQuery, String jpql, Class<T> clazz, String keyPath,
+                                 int pageSize, AtomicReference<Object> lastKey) {
+        Object key = lastKey.get();
+        String pageJpql = jpql;
+        if (key != null) {
+            String condition = keyPath + " > :" + LAST_KEY_PARAM;
+            pageJpql = withCondition(jpql, condition);
+        }
+        TypedQuery<T> pageQuery = reader.createQuery(pageJpql + " ORDER BY " + keyPath, clazz);
+        jpqlQuery.getValues().forEach(pageQuery::setParameter);
+        if (key != null) {
+            pageQuery.setParameter(LAST_KEY_PARAM, key);
+        }
+        applyTimeout(pageQuery, jpqlQuery);
+        List<T> page = timedQuery(jpqlQuery, () -> pageQuery.setMaxResults(pageSize).getResultList());
+        if (!page.isEmpty()) {
+            String attribute = keyPath.substring(keyPath.lastIndexOf('.') + 1);
+            lastKey.set(HibernateEntities.readAttribute(reader.getMetamodel(), clazz, page.get(page.size() - 1), attribute));
+        }
+        page.forEach(reader::detach);
+        return page;
+    }
+
+    /**
+     *  Adds condition to top-level WHERE as "WHERE (original) AND condition", WHERE of subqueries is not touched
+     */
+    private static String withCondition(String jpql, String condition) {
+        String topLevel = maskNested(jpql);
+        Matcher where = WHERE_PATTERN.matcher(topLevel);
+        Matcher whereEnd = WHERE_END_PATTERN.matcher(topLevel);
+        if (!where.find()) {
+            int end = whereEnd.find() ? whereEnd.start() : jpql.length();
+            return (jpql.substring(0, end).trim() + " WHERE " + condition + " " + jpql.substring(end)).trim();
+        }
+        int end = whereEnd.find(where.end()) ? whereEnd.start() : jpql.length();
+        return (jpql.substring(0, where.end()) + " (" + jpql.substring(where.end(), end).trim() + ") AND " + condition
+                + " " + jpql.substring(end)).trim();
+    }
+
+    /**
+     *  Same length copy of JPQL with string literals and parenthesized parts blanked, so only top-level keywords match
+     */
+    private static String maskNested(String jpql) {
+        StringBuilder masked = new StringBuilder(jpql.length());
+        int depth = 0;
+        boolean literal = false;
+        for (int i = 0; i < jpql.length(); i++) {
+            char c = jpql.charAt(i);
+            if (c == '\'') {
+                literal = !literal;
+            } else if (!literal && c == '(') {
+                depth++;
+            } else if (!literal && c == ')') {
+                depth--;
+            }
+            masked.append(literal || depth > 0 || c == '\'' || c == ')' ? ' ' : c);
+        }
+        return masked.toString();
+    }
+
+    private boolean isEntity(Class<?> clazz) {
+        try {
+            service.getEntityManagerFactory().getMetamodel().entity(clazz);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    protected void closeSession() {
+        active = false;
+        service.getSessions().remove(this);
+        closeEm();
+    }
+
+    /**
+     *  Prepares session for reuse: rolls back unfinished user transaction or flushes changes, then clears context
+     */
+    protected void reset() {
+        checkActive();
+        if (userTx != null) {
+            if (userTx.isActive()) {
+                userTx.rollback();
+            }
+            userTx = null;
+        } else if (!readOnly) {
+            inTransaction(em::flush);
+        }
+        em.clear();
+        pinnedToPrimary = false;
+        queryTimeout = service.getQueryTimeout();
+        if (replicaEms != null) {
+            for (EntityManager replicaEm : replicaEms) {
+                if (replicaEm != null) {
+                    replicaEm.clear();
+                }
+            }
+        }
+    }
+
     private void closeEm() {
         try {
+            if (replicaEms != null) {
+                for (EntityManager replicaEm : replicaEms) {
+                    if (replicaEm != null && replicaEm.isOpen()) {
+                        replicaEm.close();
+                    }
+                }
+            }
             if (em != null && em.isOpen()) {
-                inTransaction(em::flush);
+                if (!readOnly) {
+                    inTransaction(em::flush);
+                }
                 em.close();
             }
         } catch (Exception e) {
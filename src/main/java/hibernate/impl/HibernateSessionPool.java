@@ -0,0 +1,160 @@
+package hibernate.impl;
+
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import lombok.Getter;
+import org.hibernate.HibernateException;
+
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ *  Pool of reusable HibernateSessions with leak detection.
+ *  Released session is flushed (or its unfinished transaction is rolled back) and cleared, then kept idle for reuse.
+ *  Idle sessions older than "idle-timeout" are closed, sessions in use longer than "leak-detection-threshold"
+ *  (both created and borrowed) are reported once with stack of their acquisition.
+ *  Config keys of "session-pool": "max-idle", "idle-timeout", "leak-detection-threshold" (0 - disabled), "reaper-interval" (ms)
+ */
+public class HibernateSessionPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HibernateSessionPool.class);
+    public static final int DEFAULT_MAX_IDLE = 16;
+    public static final long DEFAULT_IDLE_TIMEOUT = 60_000L;
+    public static final long DEFAULT_LEAK_DETECTION_THRESHOLD = 0L;
+    public static final long DEFAULT_REAPER_INTERVAL = 5_000L;
+
+    private final HibernateService service;
+    @Getter
+    private final int maxIdle;
+    private final long idleTimeout;
+    private final long leakDetectionThreshold;
+    private final long reaperInterval;
+    private final Deque<HibernateSession> idle = new ConcurrentLinkedDeque<>();
+    private long reaperId = -1;
+
+    public HibernateSessionPool(HibernateService service, JsonObject poolConfig) {
+        this.service = service;
+        this.maxIdle = poolConfig.getInteger("max-idle", DEFAULT_MAX_IDLE);
+        this.idleTimeout = poolConfig.getLong("idle-timeout", DEFAULT_IDLE_TIMEOUT);
+        this.leakDetectionThreshold = poolConfig.getLong("leak-detection-threshold", DEFAULT_LEAK_DETECTION_THRESHOLD);
+        this.reaperInterval = poolConfig.getLong("reaper-interval", DEFAULT_REAPER_INTERVAL);
+    }
+
+    public void start() {
+        reaperId = service.getVertx().setPeriodic(reaperInterval, timerId -> reap());
+    }
+
+    /**
+     *  Closes idle sessions synchronously, call it on worker
+     */
+    public void stop() {
+        if (reaperId >= 0) {
+            service.getVertx().cancelTimer(reaperId);
+            reaperId = -1;
+        }
+        HibernateSession session;
+        while ((session = idle.pollFirst()) != null) {
+            try {
+                session.closeSession();
+            } catch (HibernateException e) {
+                LOGGER.error("HS: Can't close idle session: " + session.getId());
+            }
+        }
+    }
+
+    /**
+     *  Returns idle session or creates new one
+     */
+    public Single<HibernateSession> borrow() {
+        return Single.defer(() -> {
+            HibernateSession session;
+            while ((session = idle.pollFirst()) != null) {
+                if (session.isActiveSync()) {
+                    session.setPooled(false);
+                    acquired(session);
+                    return Single.just(session);
+                }
+            }
+            return service.createSession();
+        });
+    }
+
+    /**
+     *  Resets session and returns it to pool, or closes it if pool is full, session is not poolable or reset failed.
+     *  Repeated release of pooled session is ignored, so one session never gets to two borrowers
+     */
+    public Completable release(HibernateSession session) {
+        Maybe<Boolean> releaseMaybe = session.getLane().rxExecuteAndComplete(() -> {
+            if (!session.isActiveSync()) {
+                return;
+            }
+            if (session.isPooled()) {
+                LOGGER.warn("HS: Session is already released: " + session.getId());
+                return;
+            }
+            if (idle.size() >= maxIdle || !isPoolable(session)) {
+                session.closeSession();
+                return;
+            }
+            try {
+                session.reset();
+            } catch (RuntimeException e) {
+                session.closeSession();
+                throw e;
+            }
+            session.setIdleSince(System.currentTimeMillis());
+            session.setPooled(true);
+            idle.offerFirst(session);
+        });
+        return Completable.fromMaybe(releaseMaybe);
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     *  Called on session creation and borrowing
+     */
+    protected void acquired(HibernateSession session) {
+        session.setAcquiredAt(System.currentTimeMillis());
+        session.setLeakReported(false);
+        if (leakDetectionThreshold > 0) {
+            session.setAcquireStack(new Throwable("HS: Session acquired here: " + session.getId()));
+        }
+    }
+
+    /**
+     *  Pool serves only default sessions: read-only, replica-read and shard sessions are bound to their
+     *  units for life and would get to borrower expecting primary read-write session
+     */
+    private static boolean isPoolable(HibernateSession session) {
+        return !session.isReadOnly() && !session.isReplicaReads() && session.getShard() == 0;
+    }
+
+    private void reap() {
+        long now = System.currentTimeMillis();
+        Iterator<HibernateSession> idleSessions = idle.descendingIterator();
+        while (idleSessions.hasNext()) {
+            HibernateSession session = idleSessions.next();
+            if (now - session.getIdleSince() > idleTimeout && idle.removeFirstOccurrence(session)) {
+                session.getLane().rxExecuteAndComplete(session::closeSession)
+                        .subscribe(closed -> { }, e -> LOGGER.error("HS: " + e));
+            }
+        }
+        if (leakDetectionThreshold <= 0) {
+            return;
+        }
+        for (HibernateSession session : service.getSessions()) {
+            if (!session.isPooled() && !session.isLeakReported() && now - session.getAcquiredAt() > leakDetectionThreshold) {
+                session.setLeakReported(true);
+                LOGGER.warn("HS: Session is not closed or released for " + (now - session.getAcquiredAt()) + " ms: "
+                        + session.getId(), session.getAcquireStack());
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package hibernate.impl;
+
+import io.vertx.core.Context;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.reactivex.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ *  Log of queries slower than "slow-query-threshold" ms (0 - disabled). Only "slow-query-sample-rate" (0..1) of
+ *  slow queries are kept, in queue of "slow-query-queue-size" entries (overflow is dropped and counted),
+ *  which is written out by task of service executor (worker pool or virtual threads) every "slow-query-flush-interval" ms
+ */
+public class HibernateSlowQueryLog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HibernateSlowQueryLog.class);
+    public static final long DEFAULT_THRESHOLD = 0L;
+    public static final double DEFAULT_SAMPLE_RATE = 1.0;
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+
+    private final Vertx vertx;
+    private final HibernateExecutor executor;
+    private final Function<HibernateQuery, String> jpqlResolver;
+    private final long thresholdNanos;
+    private final double sampleRate;
+    private final long flushInterval;
+    private final Queue<JsonObject> entries;
+    private final AtomicLong dropped = new AtomicLong();
+    private long flushTimer = -1;
+
+    public HibernateSlowQueryLog(Vertx vertx, HibernateExecutor executor, JsonObject config, Function<HibernateQuery, String> jpqlResolver) {
+        this.vertx = vertx;
+        this.executor = executor;
+        this.jpqlResolver = jpqlResolver;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.getLong("slow-query-threshold", DEFAULT_THRESHOLD));
+        this.sampleRate = config.getDouble("slow-query-sample-rate", DEFAULT_SAMPLE_RATE);
+        this.flushInterval = config.getLong("slow-query-flush-interval", DEFAULT_FLUSH_INTERVAL);
+        this.entries = new ArrayBlockingQueue<>(config.getInteger("slow-query-queue-size", DEFAULT_QUEUE_SIZE));
+    }
+
+    public boolean isEnabled() {
+        return thresholdNanos > 0;
+    }
+
+    public void start() {
+        if (isEnabled()) {
+            flushTimer = vertx.setPeriodic(flushInterval, id -> flushOnWorker());
+        }
+    }
+
+    /**
+     *  Writes out the rest of log: at once off event loop, by executor task on event loop
+     */
+    public void stop() {
+        if (flushTimer >= 0) {
+            vertx.cancelTimer(flushTimer);
+            flushTimer = -1;
+        }
+        if (Context.isOnEventLoopThread()) {
+            flushOnWorker();
+        } else {
+            flush();
+        }
+    }
+
+    /**
+     *  Called on worker after query, nothing is allocated unless query is slow and sampled
+     */
+    public void record(String sessionId, HibernateQuery query, long nanos) {
+        if (!isEnabled() || nanos < thresholdNanos) {
+            return;
+        }
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        JsonObject entry = new JsonObject()
+                .put("session", sessionId)
+                .put("name", query.getName())
+                .put("jpql", jpqlResolver.apply(query))
+                .put("params", new JsonArray(new ArrayList<>(query.getValues().keySet())))
+                .put("time", TimeUnit.NANOSECONDS.toMillis(nanos));
+        if (!entries.offer(entry)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void flushOnWorker() {
+        executor.rxExecuteAndComplete(this::flush)
+                .subscribe(flushed -> { }, e -> LOGGER.error("HS: " + e));
+    }
+
+    private void flush() {
+        JsonObject entry;
+        while ((entry = entries.poll()) != null) {
+            LOGGER.warn("HS: Slow query: " + entry.encode());
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            LOGGER.warn("HS: Slow queries dropped from log: " + lost);
+        }
+    }
+}
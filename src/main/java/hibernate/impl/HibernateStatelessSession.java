@@ -0,0 +1,185 @@
+package hibernate.impl;
+
+import hibernate.IHibernateStatelessSession;
+import io.netty.util.internal.ThreadLocalRandom;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.hibernate.HibernateException;
+import org.hibernate.ScrollMode;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.query.Query;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+@Getter
+@EqualsAndHashCode(of = "id")
+public class HibernateStatelessSession implements IHibernateStatelessSession {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HibernateStatelessSession.class);
+
+    private String id;
+    private HibernateService service;
+    private HibernateLane lane;
+    private StatelessSession statelessSession;
+
+    protected HibernateStatelessSession(HibernateService hibernateService) {
+        this.service = hibernateService;
+        this.lane = hibernateService.getExecutor().createLane();
+        this.id = generateSessionId();
+        this.statelessSession = hibernateService.getEntityManagerFactory().unwrap(SessionFactory.class).openStatelessSession();
+        this.statelessSession.setJdbcBatchSize(hibernateService.getJdbcBatchSize());
+        this.service.getStatelessSessions().add(this);
+    }
+
+    @Override
+    public Completable close() {
+        Maybe<Boolean> closeMaybe = lane.rxExecuteAndComplete(HibernateOperation.CLOSE, () -> {
+            service.getStatelessSessions().remove(this);
+            closeSession();
+        });
+        return Completable.fromMaybe(closeMaybe);
+    }
+
+    @Override
+    public <T> Single<T> insert(T model) {
+        return lane.rxExecuteAndSupply(HibernateOperation.INSERT, () -> {
+            checkActive();
+            inTransaction(() -> statelessSession.insert(model));
+            invalidateCached(model);
+            return model;
+        }).toSingle();
+    }
+
+    @Override
+    public <T> Single<T> update(T model) {
+        return lane.rxExecuteAndSupply(HibernateOperation.UPDATE, () -> {
+            checkActive();
+            inTransaction(() -> statelessSession.update(model));
+            invalidateCached(model);
+            return model;
+        }).toSingle();
+    }
+
+    @Override
+    public <T> Single<T> delete(T model) {
+        return lane.rxExecuteAndSupply(HibernateOperation.DELETE, () -> {
+            checkActive();
+            inTransaction(() -> statelessSession.delete(model));
+            invalidateCached(model);
+            return model;
+        }).toSingle();
+    }
+
+    @Override
+    public <T> Flowable<Long> insertAll(Flowable<T> models, int batchSize) {
+        if (batchSize <= 0) {
+            return Flowable.error(new HibernateException("HS: Batch size must be positive: " + batchSize));
+        }
+        return models.buffer(batchSize)
+                .concatMapSingle(batch -> lane.rxExecuteAndSupply(HibernateOperation.INSERT, () -> {
+                    checkActive();
+                    inTransaction(() -> batch.forEach(statelessSession::insert));
+                    if (service.getQueryCache().isEnabled()) {
+                        batch.stream().map(Object::getClass).distinct().forEach(service.getQueryCache()::invalidate);
+                    }
+                    return (long) batch.size();
+                }).toSingle())
+                .scan(0L, Long::sum)
+                .skip(1);
+    }
+
+    @Override
+    public <T> Maybe<T> get(Class<T> clazz, Long id) {
+        return lane.rxExecuteAndSupply(HibernateOperation.FIND, () -> {
+            checkActive();
+            return clazz.cast(statelessSession.get(clazz, id));
+        });
+    }
+
+    @Override
+    public <T> Flowable<T> selectStream(HibernateQuery jpqlQuery, Class<T> clazz, int fetchSize) {
+        if (fetchSize <= 0) {
+            return Flowable.error(new HibernateException("HS: Fetch size must be positive: " + fetchSize));
+        }
+        return Flowable.defer(() -> {
+            AtomicLong startedAt = new AtomicLong();
+            return lane.rxScroll(jpqlQuery.getName(), () -> {
+                checkActive();
+                Query<T> selectQuery = jpqlQuery.isNamed()
+                        ? statelessSession.createNamedQuery(jpqlQuery.getName(), clazz)
+                        : statelessSession.createQuery(jpqlQuery.getJpql(), clazz);
+                jpqlQuery.getValues().forEach(selectQuery::setParameter);
+                int timeout = jpqlQuery.resolveTimeout(service.getQueryTimeout());
+                if (timeout > 0) {
+                    selectQuery.setHint(QueryHints.TIMEOUT_HIBERNATE, timeout);
+                }
+                startedAt.set(System.nanoTime());
+                return selectQuery.setFetchSize(fetchSize).scroll(ScrollMode.FORWARD_ONLY);
+            }, clazz::cast, fetchSize, null)
+                    .doFinally(() -> {
+                        // cursor time is recorded when reading ends
+                        if (startedAt.get() != 0) {
+                            service.getSlowQueryLog().record(id, jpqlQuery, System.nanoTime() - startedAt.get());
+                        }
+                    });
+        });
+    }
+
+    @Override
+    public boolean isActiveSync() {
+        return statelessSession != null && statelessSession.isOpen() && service.getStatelessSessions().contains(this);
+    }
+
+    //////////////////////////
+
+    private void invalidateCached(Object model) {
+        HibernateEntityCache entityCache = service.getEntityCache();
+        if (entityCache.isEnabled()) {
+            Object entityId = service.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(model);
+            entityCache.invalidate(model.getClass(), entityId);
+        }
+        if (service.getQueryCache().isEnabled()) {
+            service.getQueryCache().invalidate(model.getClass());
+        }
+    }
+
+    protected void closeSession() {
+        try {
+            if (statelessSession != null && statelessSession.isOpen()) {
+                statelessSession.close();
+            }
+        } catch (Exception e) {
+            LOGGER.error("HS: " + e);
+            throw new HibernateException(e);
+        }
+    }
+
+    private void inTransaction(Runnable action) {
+        Transaction tx = statelessSession.beginTransaction();
+        try {
+            action.run();
+            tx.commit();
+        } catch (Exception e) {
+            tx.rollback();
+            throw e;
+        }
+    }
+
+    private String generateSessionId() {
+        return "HSS-" + System.currentTimeMillis() + "-" + ThreadLocalRandom.current().nextInt() + "-" + service.getStatelessSessions().size();
+    }
+
+    private void checkActive() {
+        if (!isActiveSync()) {
+            throw new HibernateException("Session is inactive: " + id);
+        }
+    }
+}
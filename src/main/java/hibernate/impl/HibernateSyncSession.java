@@ -0,0 +1,64 @@
+package hibernate.impl;
+
+import hibernate.IHibernateSyncSession;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+public class HibernateSyncSession implements IHibernateSyncSession {
+    private final HibernateSession session;
+
+    protected HibernateSyncSession(HibernateSession session) {
+        this.session = session;
+    }
+
+    @Override
+    public <T> T persist(T model) {
+        getEntityManager().persist(model);
+        return model;
+    }
+
+    @Override
+    public <T> T merge(T model) {
+        return getEntityManager().merge(model);
+    }
+
+    @Override
+    public <T> T remove(T model) {
+        getEntityManager().remove(model);
+        return model;
+    }
+
+    @Override
+    public <T> T refresh(T model) {
+        getEntityManager().refresh(model);
+        return model;
+    }
+
+    @Override
+    public <T> T find(Class<T> clazz, Long id) {
+        return getEntityManager().find(clazz, id);
+    }
+
+    @Override
+    public <T> List<T> select(HibernateQuery jpqlQuery, Class<T> clazz) {
+        return session.timedQuery(jpqlQuery, () -> session.createQuery(jpqlQuery, clazz).getResultList());
+    }
+
+    @Override
+    public int execute(HibernateQuery jpqlQuery) {
+        int rows = session.timedQuery(jpqlQuery, session.createQuery(jpqlQuery)::executeUpdate);
+        session.invalidateCaches(jpqlQuery);
+        return rows;
+    }
+
+    @Override
+    public void flush() {
+        getEntityManager().flush();
+    }
+
+    @Override
+    public EntityManager getEntityManager() {
+        return session.getEm();
+    }
+}
@@ -0,0 +1,135 @@
+package hibernate.impl;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import hibernate.IHibernateConnectionPool;
+import io.vertx.core.json.JsonObject;
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ *  HikariCP connection pool. JDBC url, user, password and driver are taken from persistence unit
+ *  (hibernate.connection.* or javax.persistence.jdbc.*). Idle connections are validated in background
+ *  every "keepalive-time" ms, Hikari re-validates on borrow only connections idle longer than its alive bypass window.
+ *  Autocommit is taken from hibernate.connection.autocommit and is false if it is not set.
+ *  Pool config keys: "name", "max-size", "min-idle", "connection-timeout", "idle-timeout", "max-lifetime",
+ *  "keepalive-time", "validation-timeout" (ms)
+ */
+public class HikariConnectionPool implements IHibernateConnectionPool, Configurable, Stoppable {
+    public static final long DEFAULT_CONNECTION_TIMEOUT = 30_000L;
+    public static final long DEFAULT_IDLE_TIMEOUT = 600_000L;
+    public static final long DEFAULT_MAX_LIFETIME = 1_800_000L;
+    public static final long DEFAULT_KEEPALIVE_TIME = 60_000L;
+    public static final long DEFAULT_VALIDATION_TIMEOUT = 5_000L;
+
+    private final HibernateHistogram acquireTime = new HibernateHistogram();
+    private JsonObject poolConfig;
+    private int defaultSize;
+    private HikariDataSource dataSource;
+
+    @Override
+    public void init(JsonObject poolConfig, int defaultSize) {
+        this.poolConfig = poolConfig;
+        this.defaultSize = defaultSize;
+    }
+
+    @Override
+    public void configure(Map settings) {
+        int maxSize = poolConfig.getInteger("max-size", defaultSize);
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName(poolConfig.getString("name", HibernateService.DEFAULT_POOL_NAME));
+        hikari.setJdbcUrl(setting(settings, AvailableSettings.URL, AvailableSettings.JPA_JDBC_URL));
+        hikari.setUsername(setting(settings, AvailableSettings.USER, AvailableSettings.JPA_JDBC_USER));
+        hikari.setPassword(setting(settings, AvailableSettings.PASS, AvailableSettings.JPA_JDBC_PASSWORD));
+        String driver = setting(settings, AvailableSettings.DRIVER, AvailableSettings.JPA_JDBC_DRIVER);
+        if (driver != null) {
+            hikari.setDriverClassName(driver);
+        }
+        if (hikari.getJdbcUrl() == null) {
+            throw new HibernateException("HS: No JDBC url specified in persistence unit");
+        }
+        hikari.setAutoCommit(Boolean.parseBoolean(setting(settings, AvailableSettings.AUTOCOMMIT, AvailableSettings.AUTOCOMMIT)));
+        hikari.setMaximumPoolSize(maxSize);
+        hikari.setMinimumIdle(poolConfig.getInteger("min-idle", maxSize));
+        hikari.setConnectionTimeout(poolConfig.getLong("connection-timeout", DEFAULT_CONNECTION_TIMEOUT));
+        hikari.setIdleTimeout(poolConfig.getLong("idle-timeout", DEFAULT_IDLE_TIMEOUT));
+        hikari.setMaxLifetime(poolConfig.getLong("max-lifetime", DEFAULT_MAX_LIFETIME));
+        hikari.setKeepaliveTime(poolConfig.getLong("keepalive-time", DEFAULT_KEEPALIVE_TIME));
+        hikari.setValidationTimeout(poolConfig.getLong("validation-timeout", DEFAULT_VALIDATION_TIMEOUT));
+        this.dataSource = new HikariDataSource(hikari);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = dataSource.getConnection();
+        acquireTime.record(System.nanoTime() - start);
+        return connection;
+    }
+
+    @Override
+    public void closeConnection(Connection connection) throws SQLException {
+        connection.close();
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    @Override
+    public JsonObject getMetrics() {
+        JsonObject metrics = new JsonObject().put("acquire-time", acquireTime.snapshot());
+        HikariPoolMXBean pool = dataSource == null ? null : dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return metrics.put("active", 0).put("idle", 0).put("total", 0).put("pending", 0);
+        }
+        return metrics
+                .put("active", pool.getActiveConnections())
+                .put("idle", pool.getIdleConnections())
+                .put("total", pool.getTotalConnections())
+                .put("pending", pool.getThreadsAwaitingConnection());
+    }
+
+    @Override
+    public void stop() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean isUnwrappableAs(Class unwrapType) {
+        return unwrapType.isAssignableFrom(getClass()) || unwrapType.isAssignableFrom(HikariDataSource.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (unwrapType.isAssignableFrom(getClass())) {
+            return (T) this;
+        }
+        if (unwrapType.isAssignableFrom(HikariDataSource.class) || DataSource.class.equals(unwrapType)) {
+            return (T) dataSource;
+        }
+        throw new UnknownUnwrapTypeException(unwrapType);
+    }
+
+    private static String setting(Map settings, String key, String jpaKey) {
+        Object value = settings.get(key);
+        if (value == null) {
+            value = settings.get(jpaKey);
+        }
+        return value == null ? null : value.toString();
+    }
+}
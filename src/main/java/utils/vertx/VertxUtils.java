@@ -2,9 +2,11 @@ package utils.vertx;
 
 
 import io.reactivex.Maybe;
+import io.vertx.reactivex.core.Context;
 import io.vertx.reactivex.core.Future;
 import io.vertx.reactivex.core.Vertx;
 
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
 
 public abstract class VertxUtils {
@@ -17,6 +19,52 @@ public abstract class VertxUtils {
         return vertx.rxExecuteBlocking(future -> supplyWithCatch(future, supplier));
     }
 
+    /**
+     *  Runs supplier on foreign executor and delivers result back on caller's Vert.x context.
+     *  Any Throwable of supplier (and rejection by executor) is delivered as error, so subscriber never hangs
+     */
+    public static <T> Maybe<T> rxExecuteAndSupply(Vertx vertx, Executor executor, Supplier<T> supplier) {
+        return rxExecuteAndSupply(vertx, executor, supplier, () -> { });
+    }
+
+    /**
+     *  onRejected is called once if executor rejects task, either at once (throws from execute)
+     *  or later (calls RejectableTask.reject), supplier is not called then
+     */
+    public static <T> Maybe<T> rxExecuteAndSupply(Vertx vertx, Executor executor, Supplier<T> supplier, Runnable onRejected) {
+        return Maybe.create(emitter -> {
+            Context context = vertx.getOrCreateContext();
+            RejectableTask task = new RejectableTask() {
+                @Override
+                public void run() {
+                    try {
+                        T value = supplier.get();
+                        context.runOnContext(v -> {
+                            if (value == null) {
+                                emitter.onComplete();
+                            } else {
+                                emitter.onSuccess(value);
+                            }
+                        });
+                    } catch (Throwable e) {
+                        context.runOnContext(v -> emitter.tryOnError(e));
+                    }
+                }
+
+                @Override
+                public void reject(Throwable error) {
+                    onRejected.run();
+                    context.runOnContext(v -> emitter.tryOnError(error));
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RuntimeException e) {
+                task.reject(e);
+            }
+        });
+    }
+
     public static void completeWithCatch(Future<Boolean> future, Runnable tryAction) {
         try {
             tryAction.run();
@@ -33,4 +81,12 @@ public abstract class VertxUtils {
             future.fail(e);
         }
     }
+
+    /**
+     *  Task which can be failed without running, for executors which queue tasks
+     *  and hand them to another executor later (so cannot throw rejection to submitter)
+     */
+    public interface RejectableTask extends Runnable {
+        void reject(Throwable error);
+    }
 }
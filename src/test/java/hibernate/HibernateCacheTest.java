@@ -0,0 +1,304 @@
+package hibernate;
+
+import hibernate.base.HibernateTestBase;
+import hibernate.impl.HibernateQuery;
+import hibernate.impl.HibernateSession;
+import hibernate.mock.Mock;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(VertxExtension.class)
+public class HibernateCacheTest extends HibernateTestBase {
+    private static final String DEFAULT_NAME = "$_name_$";
+    private static final String NEW_NAME = "$_new_$";
+    private static final String REPLICA_URL = "jdbc:h2:~/tests/h2-replica";
+
+    @BeforeAll
+    public static void before(VertxTestContext ctx) {
+        JsonObject cacheConfig = new JsonObject()
+                .put("persistence-unit", "test")
+                .put("read-persistence-units", new JsonArray().add("test-replica"))
+                .put("entity-cache-max-size", 2)
+                .put("query-cache-max-rows", 3);
+        startService(cacheConfig, ctx);
+    }
+
+    @Test
+    public void entityCacheHit(VertxTestContext ctx) {
+        Mock mock = new Mock(DEFAULT_NAME);
+        long hits = service.getEntityCacheStatistics().getLong("hits");
+
+        session.persist(mock)
+                .flatMapCompletable(m -> session.flush())
+                .andThen(Completable.defer(() -> copyToReplica(mock)))
+                .andThen(Single.defer(() -> readOnlyFind(mock.getId())))
+                .flatMap(first -> {
+                    long loads = findExecutions();
+                    return readOnlyFind(mock.getId()).map(found -> {
+                        assertEquals(loads, findExecutions());
+                        return found;
+                    });
+                })
+                .doOnError(ctx::failNow)
+                .subscribe(found -> {
+                    ctx.verify(() -> {
+                        assertEquals(DEFAULT_NAME, found.getName());
+                        assertEquals(hits + 1, (long) service.getEntityCacheStatistics().getLong("hits"));
+                    });
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void entityCacheInvalidatedOnUpdate(VertxTestContext ctx) {
+        Mock mock = new Mock(DEFAULT_NAME);
+
+        session.persist(mock)
+                .flatMapCompletable(m -> session.flush())
+                .andThen(Completable.defer(() -> copyToReplica(mock)))
+                .andThen(Single.defer(() -> readOnlyFind(mock.getId())))
+                .flatMapCompletable(cached -> {
+                    mock.setName(NEW_NAME);
+                    return session.flush().andThen(copyToReplica(mock));
+                })
+                .andThen(Single.defer(() -> readOnlyFind(mock.getId())))
+                .doOnError(ctx::failNow)
+                .subscribe(found -> {
+                    ctx.verify(() -> assertEquals(NEW_NAME, found.getName()));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void entityCacheInvalidatedOnCommit(VertxTestContext ctx) {
+        Mock mock = new Mock(DEFAULT_NAME);
+
+        session.persist(mock)
+                .flatMapCompletable(m -> session.flush())
+                .andThen(Completable.defer(() -> copyToReplica(mock)))
+                .andThen(session.beginTransaction())
+                .andThen(Completable.defer(() -> {
+                    mock.setName(NEW_NAME);
+                    return session.flush();
+                }))
+                .andThen(Single.defer(() -> readOnlyFind(mock.getId())))
+                .flatMapCompletable(uncommitted -> copyToReplica(mock).andThen(session.commitTransaction()))
+                .andThen(Single.defer(() -> readOnlyFind(mock.getId())))
+                .doOnError(ctx::failNow)
+                .subscribe(found -> {
+                    ctx.verify(() -> assertEquals(NEW_NAME, found.getName()));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void entityCacheEvictsEldest(VertxTestContext ctx) {
+        long evictions = service.getEntityCacheStatistics().getLong("evictions");
+
+        Flowable.range(0, 3)
+                .concatMapSingle(i -> session.persist(new Mock(DEFAULT_NAME)))
+                .toList()
+                .flatMap(mocks -> session.flush().toSingleDefault(mocks))
+                .flatMapPublisher(Flowable::fromIterable)
+                .concatMapSingle(mock -> copyToReplica(mock).andThen(readOnlyFind(mock.getId())))
+                .ignoreElements()
+                .doOnError(ctx::failNow)
+                .subscribe(() -> {
+                    ctx.verify(() -> assertTrue(service.getEntityCacheStatistics().getLong("evictions") > evictions));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void findPrefersPersistenceContext(VertxTestContext ctx) {
+        Mock mock = new Mock(DEFAULT_NAME);
+
+        session.persist(mock)
+                .flatMapCompletable(m -> session.flush())
+                .andThen(Completable.defer(() -> copyToReplica(mock)))
+                .andThen(Single.defer(() -> readOnlyFind(mock.getId())))
+                .flatMap(cached -> {
+                    mock.setName(NEW_NAME);
+                    return session.find(Mock.class, mock.getId()).toSingle();
+                })
+                .doOnError(ctx::failNow)
+                .subscribe(found -> {
+                    ctx.verify(() -> {
+                        assertSame(mock, found);
+                        assertEquals(NEW_NAME, found.getName());
+                    });
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void queryCacheHit(VertxTestContext ctx) {
+        long hits = service.getQueryCacheStatistics().getLong("hits");
+
+        session.persist(new Mock(DEFAULT_NAME))
+                .flatMapCompletable(m -> session.flush())
+                .andThen(Single.defer(() -> selectNames(DEFAULT_NAME, 60_000L)))
+                .flatMap(first -> selectNames(DEFAULT_NAME, 60_000L))
+                .doOnError(ctx::failNow)
+                .subscribe(names -> {
+                    ctx.verify(() -> {
+                        assertEquals(Collections.singletonList(DEFAULT_NAME), names);
+                        assertEquals(hits + 1, (long) service.getQueryCacheStatistics().getLong("hits"));
+                    });
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void queryCacheExpires(VertxTestContext ctx) {
+        long hits = service.getQueryCacheStatistics().getLong("hits");
+
+        session.persist(new Mock(DEFAULT_NAME))
+                .flatMapCompletable(m -> session.flush())
+                .andThen(Single.defer(() -> selectNames(DEFAULT_NAME, 1L)))
+                .delay(50, TimeUnit.MILLISECONDS)
+                .flatMap(first -> selectNames(DEFAULT_NAME, 1L))
+                .doOnError(ctx::failNow)
+                .subscribe(names -> {
+                    ctx.verify(() -> assertEquals(hits, (long) service.getQueryCacheStatistics().getLong("hits")));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void queryCacheEvictsEldestByRows(VertxTestContext ctx) {
+        long evictions = service.getQueryCacheStatistics().getLong("evictions");
+        long hits = service.getQueryCacheStatistics().getLong("hits");
+
+        Flowable.fromArray(DEFAULT_NAME, DEFAULT_NAME, NEW_NAME, NEW_NAME)
+                .concatMapSingle(name -> session.persist(new Mock(name)))
+                .ignoreElements()
+                .andThen(session.flush())
+                .andThen(Single.defer(() -> selectNames(DEFAULT_NAME, 60_000L)))
+                .flatMap(first -> selectNames(NEW_NAME, 60_000L))
+                .flatMap(second -> selectNames(DEFAULT_NAME, 60_000L))
+                .doOnError(ctx::failNow)
+                .subscribe(names -> {
+                    ctx.verify(() -> {
+                        assertEquals(2, names.size());
+                        assertTrue(service.getQueryCacheStatistics().getLong("evictions") > evictions);
+                        assertEquals(hits, (long) service.getQueryCacheStatistics().getLong("hits"));
+                    });
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void queryCacheInvalidatedOnInsert(VertxTestContext ctx) {
+        session.persist(new Mock(DEFAULT_NAME))
+                .flatMapCompletable(m -> session.flush())
+                .andThen(Single.defer(() -> selectNames(DEFAULT_NAME, 60_000L)))
+                .flatMap(first -> session.persist(new Mock(DEFAULT_NAME)))
+                .flatMapCompletable(m -> session.flush())
+                .andThen(Single.defer(() -> selectNames(DEFAULT_NAME, 60_000L)))
+                .doOnError(ctx::failNow)
+                .subscribe(names -> {
+                    ctx.verify(() -> assertEquals(2, names.size()));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void queryCacheInvalidatedOnCommit(VertxTestContext ctx) {
+        service.createSession()
+                .flatMap(reader -> session.beginTransaction()
+                        .andThen(session.persist(new Mock(DEFAULT_NAME)))
+                        .flatMapCompletable(m -> session.flush())
+                        .andThen(Single.defer(() -> selectNames(reader, DEFAULT_NAME, 60_000L)))
+                        .flatMapCompletable(uncommitted -> session.commitTransaction())
+                        .andThen(Single.defer(() -> selectNames(reader, DEFAULT_NAME, 60_000L)))
+                        .flatMap(names -> reader.close().toSingleDefault(names)))
+                .doOnError(ctx::failNow)
+                .subscribe(names -> {
+                    ctx.verify(() -> assertEquals(Collections.singletonList(DEFAULT_NAME), names));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void entitySelectNotCachedInWritableSession(VertxTestContext ctx) {
+        HibernateQuery query = new HibernateQuery("SELECT m FROM Mock m WHERE m.name = :name")
+                .put("name", DEFAULT_NAME)
+                .setCacheTtl(60_000L);
+        JsonObject before = service.getQueryCacheStatistics();
+
+        session.persist(new Mock(DEFAULT_NAME))
+                .flatMapCompletable(m -> session.flush())
+                .andThen(Observable.defer(() -> session.select(query, Mock.class)))
+                .toList()
+                .flatMap(first -> session.select(query, Mock.class).toList())
+                .doOnError(ctx::failNow)
+                .subscribe(mocks -> {
+                    JsonObject after = service.getQueryCacheStatistics();
+                    ctx.verify(() -> {
+                        assertEquals(before.getLong("hits"), after.getLong("hits"));
+                        assertEquals(before.getLong("misses"), after.getLong("misses"));
+                    });
+                    ctx.completeNow();
+                });
+    }
+
+    private Single<List<String>> selectNames(String name, long cacheTtl) {
+        return selectNames(session, name, cacheTtl);
+    }
+
+    private Single<List<String>> selectNames(HibernateSession reader, String name, long cacheTtl) {
+        HibernateQuery query = new HibernateQuery("SELECT m.name FROM Mock m WHERE m.name = :name")
+                .put("name", name)
+                .setCacheTtl(cacheTtl);
+        return reader.select(query, String.class).toList();
+    }
+
+    /**
+     *  Read-only sessions read the replica unit, which is a separate database in tests
+     */
+    private Completable copyToReplica(Mock mock) {
+        return Completable.fromAction(() -> {
+            try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "");
+                 PreparedStatement statement = connection.prepareStatement("MERGE INTO Mock (id, name) KEY (id) VALUES (?, ?)")) {
+                statement.setLong(1, mock.getId());
+                statement.setString(2, mock.getName());
+                statement.executeUpdate();
+            }
+        }).subscribeOn(Schedulers.io());
+    }
+
+    /**
+     *  Count of find() tasks run on worker, cache hits don't add to it
+     */
+    private static long findExecutions() {
+        return service.metrics().getJsonObject("operations").getJsonObject("find").getJsonObject("execution").getLong("count");
+    }
+
+    private Single<Mock> readOnlyFind(Long id) {
+        return service.createReadOnlySession()
+                .flatMap(readOnly -> readOnly.find(Mock.class, id).toSingle()
+                        .flatMap(found -> readOnly.close().toSingleDefault(found)));
+    }
+}
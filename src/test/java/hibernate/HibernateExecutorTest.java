@@ -0,0 +1,262 @@
+package hibernate;
+
+import hibernate.impl.HibernateExecutor;
+import hibernate.impl.HibernateFindCoalescer;
+import hibernate.impl.HibernateLane;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.hibernate.ScrollableResults;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@ExtendWith(VertxExtension.class)
+@SuppressWarnings("CheckReturnValue")
+public class HibernateExecutorTest {
+
+    @Test
+    public void rejectWhenQueueIsFull(Vertx vertx, VertxTestContext ctx) throws InterruptedException {
+        JsonObject config = new JsonObject()
+                .put("worker-pool-name", "hibernate-executor-test")
+                .put("worker-pool-size", 1)
+                .put("worker-max-queue", 1);
+        HibernateExecutor executor = new HibernateExecutor(io.vertx.reactivex.core.Vertx.newInstance(vertx), config);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.rxExecuteAndComplete(() -> {
+            started.countDown();
+            awaitQuietly(release);
+        }).subscribe();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        executor.rxExecuteAndComplete(() -> { }).subscribe();
+        executor.rxExecuteAndComplete(() -> { })
+                .subscribe(done -> ctx.failNow(new AssertionError("Operation must be rejected")), error -> {
+                    ctx.verify(() -> {
+                        assertTrue(error instanceof HibernateOverloadException);
+                        assertEquals(1, executor.getQueueSize());
+                    });
+                    release.countDown();
+                    executor.close();
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void laneKeepsSubmissionOrder(Vertx vertx, VertxTestContext ctx) {
+        JsonObject config = new JsonObject()
+                .put("worker-pool-name", "hibernate-lane-test")
+                .put("worker-pool-size", 4);
+        HibernateExecutor executor = new HibernateExecutor(io.vertx.reactivex.core.Vertx.newInstance(vertx), config);
+        HibernateLane lane = executor.createLane();
+        List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+
+        Observable.range(0, 50)
+                .flatMapMaybe(i -> lane.rxExecuteAndSupply(() -> {
+                    executed.add(i);
+                    return i;
+                }))
+                .toList()
+                .doOnError(ctx::failNow)
+                .subscribe(results -> {
+                    ctx.verify(() -> {
+                        assertEquals(50, results.size());
+                        for (int i = 0; i < executed.size(); i++) {
+                            assertEquals(Integer.valueOf(i), executed.get(i));
+                        }
+                    });
+                    executor.close();
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void errorOfTaskIsDelivered(Vertx vertx, VertxTestContext ctx) {
+        HibernateExecutor executor = new HibernateExecutor(io.vertx.reactivex.core.Vertx.newInstance(vertx),
+                new JsonObject().put("worker-pool-name", "hibernate-error-test"));
+
+        executor.rxExecuteAndSupply(() -> {
+            throw new AssertionError("task error");
+        }).subscribe(done -> ctx.failNow(new AssertionError("Task must fail")), error -> {
+            ctx.verify(() -> assertEquals("task error", error.getMessage()));
+            executor.close();
+            ctx.completeNow();
+        });
+    }
+
+    @Test
+    public void laneFailsTasksAfterClose(Vertx vertx, VertxTestContext ctx) throws InterruptedException {
+        HibernateExecutor executor = new HibernateExecutor(io.vertx.reactivex.core.Vertx.newInstance(vertx),
+                new JsonObject().put("worker-pool-name", "hibernate-close-test"));
+        HibernateLane lane = executor.createLane();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        lane.rxExecuteAndComplete(() -> {
+            started.countDown();
+            awaitQuietly(release);
+        }).subscribe();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Single<Boolean> queued = lane.rxExecuteAndComplete(() -> { }).toSingle().cache();
+        queued.subscribe(done -> { }, error -> { });
+        executor.close();
+        release.countDown();
+
+        queued.map(done -> false)
+                .onErrorReturn(error -> true)
+                .flatMap(rejected -> lane.rxExecuteAndComplete(() -> { }).toSingle()
+                        .map(done -> false)
+                        .onErrorReturn(error -> true)
+                        .map(next -> rejected && next))
+                .subscribe(rejected -> {
+                    ctx.verify(() -> {
+                        assertTrue(rejected);
+                        assertEquals(0, executor.getQueueSize());
+                    });
+                    ctx.completeNow();
+                }, ctx::failNow);
+    }
+
+    @Test
+    public void cursorOpenedAfterDisposeIsClosed(Vertx vertx, VertxTestContext ctx) throws InterruptedException {
+        HibernateExecutor executor = new HibernateExecutor(io.vertx.reactivex.core.Vertx.newInstance(vertx),
+                new JsonObject().put("worker-pool-name", "hibernate-cursor-test"));
+        CountDownLatch opening = new CountDownLatch(1);
+        CountDownLatch open = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        ScrollableResults results = (ScrollableResults) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ScrollableResults.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        closed.countDown();
+                    }
+                    return method.getReturnType() == boolean.class ? false : null;
+                });
+
+        Disposable rows = executor.createLane().rxScroll(() -> {
+            opening.countDown();
+            awaitQuietly(open);
+            return results;
+        }, row -> row, 10).subscribe(row -> ctx.failNow(new AssertionError("No row expected")), ctx::failNow);
+        assertTrue(opening.await(5, TimeUnit.SECONDS));
+        rows.dispose();
+        open.countDown();
+
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        executor.close();
+        ctx.completeNow();
+    }
+
+    @Test
+    public void virtualThreadMode(Vertx vertx, VertxTestContext ctx) throws Exception {
+        assumeTrue(Arrays.stream(Executors.class.getMethods()).anyMatch(method -> method.getName().equals("newVirtualThreadPerTaskExecutor")),
+                "Virtual threads are not supported by JVM " + System.getProperty("java.version"));
+        Method isVirtual = Thread.class.getMethod("isVirtual");
+        JsonObject config = new JsonObject()
+                .put("worker-pool-name", "hibernate-virtual-test")
+                .put("worker-mode", HibernateExecutor.VIRTUAL_THREAD_MODE);
+        HibernateExecutor executor = new HibernateExecutor(io.vertx.reactivex.core.Vertx.newInstance(vertx), config);
+
+        executor.createLane().rxExecuteAndSupply(() -> invoke(isVirtual, Thread.currentThread()))
+                .doOnError(ctx::failNow)
+                .subscribe(virtual -> {
+                    ctx.verify(() -> {
+                        assertTrue((Boolean) virtual);
+                        assertNull(executor.getWorkerExecutor());
+                    });
+                    executor.close();
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void coalescerLoadsTickInOneBatch(Vertx vertx, VertxTestContext ctx) {
+        io.vertx.reactivex.core.Vertx rxVertx = io.vertx.reactivex.core.Vertx.newInstance(vertx);
+        HibernateExecutor executor = new HibernateExecutor(rxVertx, new JsonObject().put("worker-pool-name", "hibernate-coalescer-test"));
+        List<Map<Class<?>, List<Long>>> batches = Collections.synchronizedList(new ArrayList<>());
+        HibernateFindCoalescer coalescer = new HibernateFindCoalescer(rxVertx, executor.createLane(), 0, ids -> {
+            batches.add(ids);
+            Map<Long, Object> found = new HashMap<>();
+            ids.get(String.class).stream().filter(id -> id != 3L).forEach(id -> found.put(id, "mock-" + id));
+            return Collections.singletonMap(String.class, found);
+        });
+
+        List<Single<String>> finds = Arrays.asList(1L, 2L, 3L, 2L).stream()
+                .map(id -> coalescer.find(String.class, id).defaultIfEmpty("none").toSingle())
+                .collect(Collectors.toList());
+
+        vertx.runOnContext(v -> Single.zip(finds, found -> Arrays.asList(found))
+                .doOnError(ctx::failNow)
+                .subscribe(found -> {
+                    ctx.verify(() -> {
+                        assertEquals(Arrays.asList("mock-1", "mock-2", "none", "mock-2"), found);
+                        assertEquals(1, batches.size());
+                        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L)), new HashSet<>(batches.get(0).get(String.class)));
+                    });
+                    executor.close();
+                    ctx.completeNow();
+                }));
+    }
+
+    @Test
+    public void coalescerFlushesBeforeLaneTask(Vertx vertx, VertxTestContext ctx) {
+        io.vertx.reactivex.core.Vertx rxVertx = io.vertx.reactivex.core.Vertx.newInstance(vertx);
+        HibernateExecutor executor = new HibernateExecutor(rxVertx, new JsonObject().put("worker-pool-name", "hibernate-coalescer-test"));
+        HibernateLane lane = executor.createLane();
+        List<String> executed = Collections.synchronizedList(new ArrayList<>());
+        HibernateFindCoalescer coalescer = new HibernateFindCoalescer(rxVertx, lane, 1000, ids -> {
+            executed.add("find");
+            return Collections.emptyMap();
+        });
+
+        vertx.runOnContext(v -> {
+            coalescer.find(String.class, 1L).subscribe(found -> { }, ctx::failNow);
+            lane.rxExecuteAndComplete(() -> executed.add("update"))
+                    .doOnError(ctx::failNow)
+                    .subscribe(done -> {
+                        ctx.verify(() -> assertEquals(Arrays.asList("find", "update"), executed));
+                        executor.close();
+                        ctx.completeNow();
+                    });
+        });
+    }
+
+    private static Object invoke(Method method, Object target) {
+        try {
+            return method.invoke(target);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,14 +1,24 @@
 package hibernate;
 
 import hibernate.base.HibernateTestBase;
+import hibernate.impl.HibernateQuery;
 import hibernate.mock.Mock;
+import io.reactivex.Flowable;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 
 @ExtendWith(VertxExtension.class)
 public class HibernatePersistenceTest extends HibernateTestBase {
@@ -67,4 +77,59 @@ public class HibernatePersistenceTest extends HibernateTestBase {
                     ctx.completeNow();
                 });
     }
+
+    @Test
+    public void persistAllByBatches(VertxTestContext ctx) {
+        Flowable<Mock> mocks = Flowable.range(0, 7).map(i -> new Mock(DEFAULT_NAME));
+
+        session.persistAll(mocks, 3)
+                .toList()
+                .doOnError(ctx::failNow)
+                .subscribe(progress -> {
+                    ctx.verify(() -> assertEquals(Arrays.asList(3L, 6L, 7L), progress));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void transactInOneHop(VertxTestContext ctx) {
+        service.transact(sync -> {
+            Mock mock = sync.persist(new Mock(DEFAULT_NAME));
+            sync.flush();
+            sync.find(Mock.class, mock.getId()).setName(NEW_NAME);
+            return mock.getId();
+        })
+                .flatMapMaybe(id -> session.find(Mock.class, id))
+                .doOnError(ctx::failNow)
+                .subscribe(entity -> {
+                    ctx.verify(() -> assertEquals(NEW_NAME, entity.getName()));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void transactRetriesWithNewEntityManager(VertxTestContext ctx) {
+        List<EntityManager> attempts = new CopyOnWriteArrayList<>();
+
+        service.transact(sync -> {
+            attempts.add(sync.getEntityManager());
+            sync.persist(new Mock(DEFAULT_NAME));
+            if (attempts.size() == 1) {
+                sync.flush();
+                throw new OptimisticLockException("HS: Test conflict");
+            }
+            return attempts.size();
+        }, 1)
+                .flatMap(attempt -> session.select(new HibernateQuery("SELECT m FROM Mock m"), Mock.class).toList())
+                .doOnError(ctx::failNow)
+                .subscribe(mocks -> {
+                    ctx.verify(() -> {
+                        assertEquals(2, attempts.size());
+                        assertNotSame(attempts.get(0), attempts.get(1));
+                        assertFalse(attempts.get(0).isOpen());
+                        assertEquals(1, mocks.size());
+                    });
+                    ctx.completeNow();
+                });
+    }
 }
@@ -1,18 +1,37 @@
 package hibernate;
 
 import hibernate.base.HibernateTestBase;
+import hibernate.impl.HibernateExporter;
 import hibernate.impl.HibernateQuery;
 import hibernate.mock.Mock;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import io.vertx.reactivex.core.file.FileSystem;
+import org.hibernate.HibernateException;
+import org.hibernate.QueryTimeoutException;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -21,6 +40,20 @@ public class HibernateQueryTest extends HibernateTestBase {
     private static final String DEFAULT_NAME = "$_name_$";
     private static final String NEW_NAME = "$_new_$";
     private static final Long MOCK_ID = 99999L;
+    private static final String SLOW_QUERY = "SELECT COUNT(a) FROM Mock a, Mock b, Mock c, Mock d";
+    private static final int SLOW_QUERY_ROWS = 100;
+    private static final long SLOW_QUERY_BOUND = 5000L;
+
+    @BeforeAll
+    public static void before(VertxTestContext ctx) {
+        JsonObject queryConfig = new JsonObject()
+                .put("persistence-unit", "test")
+                .put("read-persistence-units", new JsonArray().add("test-replica"))
+                .put("shard-persistence-units", new JsonArray().add("test-shard"))
+                .put("statistics", true);
+        startService(queryConfig, hibernateService -> hibernateService
+                .registerNamedQuery("Mock.byName", "SELECT m FROM Mock m WHERE m.name = :name"), ctx);
+    }
 
     @Test
     public void findExists(VertxTestContext ctx) {
@@ -49,6 +82,23 @@ public class HibernateQueryTest extends HibernateTestBase {
                 });
     }
 
+    @Test
+    public void findAllSkipsMissing(VertxTestContext ctx) {
+        Mock mock1 = new Mock(DEFAULT_NAME);
+        Mock mock2 = new Mock(DEFAULT_NAME);
+
+        session.persist(mock1)
+                .flatMap(m -> session.persist(mock2))
+                .flatMapCompletable(m -> session.flush())
+                .andThen(Observable.defer(() -> session.findAll(Mock.class, Arrays.asList(mock1.getId(), MOCK_ID, mock2.getId()))))
+                .count()
+                .doOnError(ctx::failNow)
+                .subscribe(count -> {
+                    ctx.verify(() -> assertEquals(new Long(2), count));
+                    ctx.completeNow();
+                });
+    }
+
     @Test
     public void selectSingle(VertxTestContext ctx) {
         Mock mock = new Mock(DEFAULT_NAME);
@@ -83,6 +133,91 @@ public class HibernateQueryTest extends HibernateTestBase {
                 });
     }
 
+    @Test
+    public void selectNamed(VertxTestContext ctx) {
+        Mock mock = new Mock(DEFAULT_NAME);
+        HibernateQuery query = HibernateQuery.named("Mock.byName").put("name", DEFAULT_NAME);
+
+        session.persist(mock)
+                .flatMapCompletable(m -> session.flush())
+                .andThen(Observable.defer(() -> session.select(query, Mock.class)))
+                .count()
+                .doOnError(ctx::failNow)
+                .subscribe(count -> {
+                    ctx.verify(() -> assertEquals(new Long(1), count));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void selectStreamByChunks(VertxTestContext ctx) {
+        HibernateQuery query = new HibernateQuery("SELECT m FROM Mock m WHERE m.name = :name").put("name", DEFAULT_NAME);
+
+        Observable.range(0, 5)
+                .flatMapSingle(i -> session.persist(new Mock(DEFAULT_NAME)))
+                .ignoreElements()
+                .andThen(session.flush())
+                .andThen(Flowable.defer(() -> session.selectStream(query, Mock.class, 2)))
+                .count()
+                .doOnError(ctx::failNow)
+                .subscribe(count -> {
+                    ctx.verify(() -> assertEquals(new Long(5), count));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void selectPagesByKey(VertxTestContext ctx) {
+        HibernateQuery query = new HibernateQuery("SELECT m FROM Mock m WHERE m.name = :name").put("name", DEFAULT_NAME);
+
+        Observable.range(0, 5)
+                .flatMapSingle(i -> session.persist(new Mock(DEFAULT_NAME)))
+                .ignoreElements()
+                .andThen(session.flush())
+                .andThen(Flowable.defer(() -> session.selectPages(query, Mock.class, "m.id", 2)))
+                .map(List::size)
+                .toList()
+                .doOnError(ctx::failNow)
+                .subscribe(sizes -> {
+                    ctx.verify(() -> assertEquals(Arrays.asList(2, 2, 1), sizes));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void selectPagesWithOrPredicate(VertxTestContext ctx) {
+        HibernateQuery query = new HibernateQuery("SELECT m FROM Mock m WHERE m.name = :name OR m.name = :newName "
+                + "AND m.id IN (SELECT n.id FROM Mock n WHERE n.name = :newName)")
+                .put("name", DEFAULT_NAME)
+                .put("newName", NEW_NAME);
+
+        Observable.range(0, 5)
+                .flatMapSingle(i -> session.persist(new Mock(i % 2 == 0 ? DEFAULT_NAME : NEW_NAME)))
+                .ignoreElements()
+                .andThen(session.flush())
+                .andThen(Flowable.defer(() -> session.selectPages(query, Mock.class, "m.id", 2)))
+                .take(10)
+                .map(List::size)
+                .toList()
+                .doOnError(ctx::failNow)
+                .subscribe(sizes -> {
+                    ctx.verify(() -> assertEquals(Arrays.asList(2, 2, 1), sizes));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void selectPagesRejectsNestedKeyAndNonEntity(VertxTestContext ctx) {
+        session.selectPages(new HibernateQuery("SELECT m FROM Mock m"), Mock.class, "m.owner.id", 2)
+                .test()
+                .assertError(HibernateException.class)
+                .assertErrorMessage("HS: Key path must be alias.attribute of selected entity: m.owner.id");
+        session.selectPages(new HibernateQuery("SELECT m.name FROM Mock m"), String.class, "m.name", 2)
+                .test()
+                .assertError(HibernateException.class)
+                .assertErrorMessage("HS: Keyset pages must be entities: java.lang.String");
+        ctx.completeNow();
+    }
 
     @Test
     public void executeUpdate(VertxTestContext ctx) {
@@ -100,4 +235,145 @@ public class HibernateQueryTest extends HibernateTestBase {
                     ctx.completeNow();
                 });
     }
+
+    @Test
+    public void queryStatistics(VertxTestContext ctx) {
+        HibernateQuery query = HibernateQuery.named("Mock.byName").put("name", DEFAULT_NAME);
+
+        session.select(query, Mock.class)
+                .count()
+                .doOnError(ctx::failNow)
+                .subscribe(count -> {
+                    JsonObject statistics = service.getStatistics();
+                    ctx.verify(() -> {
+                        assertTrue(statistics.getLong("query-executions") > 0);
+                        assertTrue(statistics.getJsonObject("queries").containsKey("SELECT m FROM Mock m WHERE m.name = :name"));
+                    });
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void disposedSelectIsCancelled(VertxTestContext ctx) {
+        AtomicBoolean delivered = new AtomicBoolean();
+
+        persistMocks(SLOW_QUERY_ROWS)
+                .andThen(Single.defer(() -> {
+                    long startedAt = System.currentTimeMillis();
+                    Disposable running = session.select(new HibernateQuery(SLOW_QUERY), Long.class)
+                            .subscribe(count -> delivered.set(true), e -> { });
+                    return Completable.timer(200, TimeUnit.MILLISECONDS)
+                            .doOnComplete(running::dispose)
+                            .andThen(session.select(new HibernateQuery("SELECT COUNT(m) FROM Mock m"), Long.class).firstOrError())
+                            .map(count -> {
+                                assertEquals(SLOW_QUERY_ROWS, count.intValue());
+                                return System.currentTimeMillis() - startedAt;
+                            });
+                }))
+                .doOnError(ctx::failNow)
+                .subscribe(elapsed -> {
+                    ctx.verify(() -> {
+                        assertFalse(delivered.get());
+                        assertTrue(elapsed < SLOW_QUERY_BOUND, "Statement is not cancelled: " + elapsed + " ms");
+                    });
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void selectTimesOut(VertxTestContext ctx) {
+        HibernateQuery query = new HibernateQuery(SLOW_QUERY).setTimeout(500);
+
+        persistMocks(SLOW_QUERY_ROWS)
+                .andThen(session.select(query, Long.class).firstOrError())
+                .subscribe(count -> ctx.failNow(new AssertionError("Query must time out")), error -> {
+                    ctx.verify(() -> assertTrue(error instanceof QueryTimeoutException, error.toString()));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void readOnlySessionReadsReplica(VertxTestContext ctx) {
+        Mock mock = new Mock(DEFAULT_NAME);
+
+        session.persist(mock)
+                .flatMapCompletable(m -> session.flush())
+                .andThen(service.createSession(true))
+                .flatMap(readOnly -> readOnly.find(Mock.class, mock.getId()).isEmpty()
+                        .flatMap(missingOnReplica -> readOnly.persist(new Mock(NEW_NAME))
+                                .flatMap(written -> readOnly.find(Mock.class, mock.getId()).isEmpty())
+                                .map(missingOnPrimary -> missingOnReplica && !missingOnPrimary))
+                        .flatMap(routed -> readOnly.close().toSingleDefault(routed)))
+                .doOnError(ctx::failNow)
+                .subscribe(routed -> {
+                    ctx.verify(() -> assertTrue(routed));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void scatterSelectMergesOrdered(VertxTestContext ctx) {
+        HibernateQuery deleteQuery = new HibernateQuery("DELETE FROM Mock");
+
+        service.createShardSession(1L)
+                .flatMap(shard -> shard.persist(new Mock("b"))
+                        .flatMapCompletable(m -> shard.close())
+                        .andThen(session.persist(new Mock("c")))
+                        .flatMap(m -> session.persist(new Mock("a")))
+                        .flatMapCompletable(m -> session.flush())
+                        .andThen(service.scatterSelect(new HibernateQuery("SELECT m FROM Mock m ORDER BY m.name"), Mock.class)
+                                .map(Mock::getName)
+                                .toList()))
+                .flatMap(names -> service.createShardSession(1L)
+                        .flatMap(shard -> shard.execute(deleteQuery).flatMap(rows -> shard.close().toSingleDefault(names))))
+                .doOnError(ctx::failNow)
+                .subscribe(names -> {
+                    ctx.verify(() -> assertEquals(Arrays.asList("a", "b", "c"), names));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void selectJsonProjection(VertxTestContext ctx) {
+        Mock mock = new Mock(DEFAULT_NAME);
+        HibernateQuery query = new HibernateQuery("SELECT m.id AS id, m.name AS name FROM Mock m WHERE m.name = :name")
+                .put("name", DEFAULT_NAME);
+
+        session.persist(mock)
+                .flatMapCompletable(m -> session.flush())
+                .andThen(Single.defer(() -> session.selectJsonArray(query)))
+                .doOnError(ctx::failNow)
+                .subscribe(rows -> {
+                    ctx.verify(() -> {
+                        assertEquals(1, rows.size());
+                        assertEquals(new JsonObject().put("id", mock.getId()).put("name", DEFAULT_NAME), rows.getJsonObject(0));
+                    });
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void exportToCsv(VertxTestContext ctx) throws Exception {
+        HibernateQuery query = new HibernateQuery("SELECT m.name AS name FROM Mock m WHERE m.name = :name")
+                .put("name", "a,\"b\"");
+        String path = File.createTempFile("export", ".csv").getAbsolutePath();
+        FileSystem fileSystem = io.vertx.reactivex.core.Vertx.newInstance(vertx).fileSystem();
+
+        session.persist(new Mock("a,\"b\""))
+                .flatMapCompletable(m -> session.flush())
+                .andThen(fileSystem.rxOpen(path, new OpenOptions().setTruncateExisting(true)))
+                .flatMap(file -> session.exportTo(query, file, HibernateExporter.Format.CSV)
+                        .flatMap(rows -> file.rxClose().toSingleDefault(rows)))
+                .flatMap(rows -> fileSystem.rxReadFile(path).map(content -> rows + ":" + content))
+                .doOnError(ctx::failNow)
+                .subscribe(result -> {
+                    ctx.verify(() -> assertEquals("1:name\r\n\"a,\"\"b\"\"\"\r\n", result));
+                    ctx.completeNow();
+                });
+    }
+
+    private Completable persistMocks(int count) {
+        return session.persistAll(IntStream.range(0, count).mapToObj(i -> new Mock(DEFAULT_NAME)).collect(Collectors.toList()))
+                .ignoreElements();
+    }
 }
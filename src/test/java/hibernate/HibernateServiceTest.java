@@ -0,0 +1,46 @@
+package hibernate;
+
+import hibernate.impl.HibernateService;
+import io.reactivex.Completable;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *  Service lifecycle without shared service of HibernateTestBase: closing units drops their create-drop schemas
+ */
+@ExtendWith(VertxExtension.class)
+@SuppressWarnings("CheckReturnValue")
+public class HibernateServiceTest {
+
+    @Test
+    public void failedStartClosesBuiltUnits(Vertx vertx, VertxTestContext ctx) {
+        JsonObject config = new JsonObject()
+                .put("persistence-unit", "test")
+                .put("read-persistence-units", new JsonArray().add("test-replica"))
+                .put("shard-persistence-units", new JsonArray().add("test-shard"))
+                .put("shard-strategy", new JsonObject().put("provider", "hibernate.NoSuchShardStrategy"))
+                .put("connection-pool", new JsonObject().put("name", "failed-start-pool"));
+        HibernateService service = new HibernateService(vertx, config);
+
+        service.start()
+                .andThen(Completable.error(new AssertionError("Start must fail")))
+                .onErrorResumeNext(e -> e instanceof AssertionError ? Completable.error(e) : Completable.complete())
+                .andThen(Completable.timer(500, TimeUnit.MILLISECONDS))
+                .subscribe(() -> {
+                    Set<String> threads = Thread.getAllStackTraces().keySet().stream().map(Thread::getName).collect(Collectors.toSet());
+                    ctx.verify(() -> assertTrue(threads.stream().noneMatch(thread -> thread.startsWith("failed-start-pool"))));
+                    ctx.completeNow();
+                }, ctx::failNow);
+    }
+}
@@ -1,16 +1,61 @@
 package hibernate;
 
 import hibernate.base.HibernateTestBase;
+import hibernate.impl.HibernateEventBusSession;
+import hibernate.impl.HibernateExecutor;
+import hibernate.impl.HibernateMessage;
+import hibernate.impl.HibernateMessageCodec;
+import hibernate.impl.HibernateQuery;
 import hibernate.impl.HibernateSession;
+import hibernate.impl.HibernateSessionPool;
+import hibernate.impl.HibernateSlowQueryLog;
+import hibernate.mock.Mock;
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import org.hibernate.HibernateException;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.stream.Collectors;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(VertxExtension.class)
 public class HibernateSessionTest extends HibernateTestBase {
+    private static final String SLOW_QUERY_PREFIX = "HS: Slow query: ";
+    private static final String EVENT_BUS_ADDRESS = "hibernate.test";
+    private static final long IDLE_TIMEOUT = 300L;
+    private static final long LEAK_DETECTION_THRESHOLD = 300L;
+    private static final long SLOW_QUERY_THRESHOLD = 100L;
+    private static final long SLOW_QUERY_FLUSH_INTERVAL = 100L;
+
+    @BeforeAll
+    public static void before(VertxTestContext ctx) {
+        JsonObject sessionConfig = new JsonObject()
+                .put("persistence-unit", "test")
+                .put("read-persistence-units", new JsonArray().add("test-replica"))
+                .put("shard-persistence-units", new JsonArray().add("test-shard"))
+                .put("event-bus-address", EVENT_BUS_ADDRESS)
+                .put("session-pool", new JsonObject()
+                        .put("idle-timeout", IDLE_TIMEOUT)
+                        .put("leak-detection-threshold", LEAK_DETECTION_THRESHOLD)
+                        .put("reaper-interval", 100L))
+                .put("slow-query-threshold", SLOW_QUERY_THRESHOLD)
+                .put("slow-query-flush-interval", SLOW_QUERY_FLUSH_INTERVAL);
+        startService(sessionConfig, ctx);
+    }
 
     @Test
     public void createSession(VertxTestContext ctx) {
@@ -50,4 +95,321 @@ public class HibernateSessionTest extends HibernateTestBase {
                 .doOnError(ctx::failNow)
                 .subscribe(ctx::completeNow);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void borrowReleasedSession(VertxTestContext ctx) {
+        service.borrowSession()
+                .flatMap(borrowed -> service.release(borrowed).toSingleDefault(borrowed))
+                .flatMap(released -> service.borrowSession()
+                        .flatMap(reused -> service.release(reused).toSingleDefault(reused == released)))
+                .doOnError(ctx::failNow)
+                .subscribe(isReused -> {
+                    ctx.verify(() -> assertTrue(isReused));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void doubleReleaseIsIgnored(VertxTestContext ctx) {
+        service.borrowSession()
+                .flatMap(borrowed -> service.release(borrowed)
+                        .andThen(service.release(borrowed))
+                        .andThen(service.borrowSession())
+                        .flatMap(first -> service.borrowSession()
+                                .flatMap(second -> service.release(first)
+                                        .andThen(service.release(second))
+                                        .toSingleDefault(first != second))))
+                .doOnError(ctx::failNow)
+                .subscribe(distinct -> {
+                    ctx.verify(() -> assertTrue(distinct));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void readOnlySessionIsNotPooled(VertxTestContext ctx) {
+        service.createReadOnlySession()
+                .flatMap(readOnly -> service.release(readOnly).toSingleDefault(readOnly))
+                .flatMap(released -> service.borrowSession()
+                        .flatMap(borrowed -> service.release(borrowed).toSingleDefault(borrowed != released && !released.isActiveSync())))
+                .doOnError(ctx::failNow)
+                .subscribe(closed -> {
+                    ctx.verify(() -> assertTrue(closed));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void idleSessionIsReaped(VertxTestContext ctx) {
+        service.borrowSession()
+                .flatMap(borrowed -> service.release(borrowed).toSingleDefault(borrowed))
+                .delay(IDLE_TIMEOUT * 3, TimeUnit.MILLISECONDS)
+                .doOnError(ctx::failNow)
+                .subscribe(released -> {
+                    ctx.verify(() -> assertFalse(released.isActiveSync()));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void leakedSessionIsReported(VertxTestContext ctx) {
+        java.util.logging.Logger poolLogger = java.util.logging.Logger.getLogger(HibernateSessionPool.class.getName());
+        List<String> warnings = new CopyOnWriteArrayList<>();
+        Handler handler = collectTo(warnings);
+        poolLogger.addHandler(handler);
+
+        service.borrowSession()
+                .delay(LEAK_DETECTION_THRESHOLD * 3, TimeUnit.MILLISECONDS)
+                .flatMap(leaked -> service.release(leaked).toSingleDefault(leaked))
+                .doFinally(() -> poolLogger.removeHandler(handler))
+                .doOnError(ctx::failNow)
+                .subscribe(leaked -> {
+                    ctx.verify(() -> assertTrue(warnings.stream().anyMatch(warning -> warning.contains(leaked.getId()))));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void slowQueryIsLogged(VertxTestContext ctx) {
+        HibernateExecutor executor = createSlowQueryExecutor();
+        HibernateSlowQueryLog slowQueryLog = new HibernateSlowQueryLog(io.vertx.reactivex.core.Vertx.newInstance(vertx), executor,
+                new JsonObject().put("slow-query-threshold", 10L), HibernateQuery::getJpql);
+        HibernateQuery query = new HibernateQuery("SELECT m FROM Mock m WHERE m.name = :name").put("name", "slow");
+        List<String> warnings = captureSlowQueryLog(() -> {
+            slowQueryLog.record("fast-session", query, TimeUnit.MILLISECONDS.toNanos(5));
+            slowQueryLog.record("slow-session", query, TimeUnit.MILLISECONDS.toNanos(20));
+            slowQueryLog.stop();
+        });
+        executor.close();
+
+        ctx.verify(() -> {
+            assertEquals(1, warnings.size());
+            assertTrue(warnings.get(0).startsWith(SLOW_QUERY_PREFIX));
+            JsonObject entry = new JsonObject(warnings.get(0).substring(SLOW_QUERY_PREFIX.length()));
+            assertEquals("slow-session", entry.getString("session"));
+            assertEquals(query.getJpql(), entry.getString("jpql"));
+            assertEquals("name", entry.getJsonArray("params").getString(0));
+            assertEquals(20L, (long) entry.getLong("time"));
+        });
+        ctx.completeNow();
+    }
+
+    @Test
+    public void slowQueryOverflowIsCounted(VertxTestContext ctx) {
+        JsonObject config = new JsonObject()
+                .put("slow-query-threshold", 10L)
+                .put("slow-query-queue-size", 1);
+        HibernateExecutor executor = createSlowQueryExecutor();
+        HibernateSlowQueryLog slowQueryLog = new HibernateSlowQueryLog(io.vertx.reactivex.core.Vertx.newInstance(vertx), executor,
+                config, HibernateQuery::getJpql);
+        HibernateQuery query = new HibernateQuery("SELECT m FROM Mock m");
+        List<String> warnings = captureSlowQueryLog(() -> {
+            for (int i = 0; i < 3; i++) {
+                slowQueryLog.record("slow-session", query, TimeUnit.MILLISECONDS.toNanos(20));
+            }
+            slowQueryLog.stop();
+        });
+        executor.close();
+
+        ctx.verify(() -> {
+            assertEquals(2, warnings.size());
+            assertTrue(warnings.get(0).startsWith(SLOW_QUERY_PREFIX));
+            assertEquals("HS: Slow queries dropped from log: 2", warnings.get(1));
+        });
+        ctx.completeNow();
+    }
+
+    @Test
+    public void slowStreamIsTimedUntilReadEnds(VertxTestContext ctx) {
+        java.util.logging.Logger logger = java.util.logging.Logger.getLogger(HibernateSlowQueryLog.class.getName());
+        List<String> warnings = new CopyOnWriteArrayList<>();
+        Handler handler = collectTo(warnings);
+        logger.addHandler(handler);
+        HibernateQuery query = new HibernateQuery("SELECT m FROM Mock m WHERE m.name = :slowStream").put("slowStream", "slow-stream");
+
+        session.persist(new Mock("slow-stream"))
+                .flatMap(m -> session.persist(new Mock("slow-stream")))
+                .flatMapCompletable(m -> session.flush())
+                .andThen(Single.fromCallable(() -> session.selectStream(query, Mock.class, 1).test(1)))
+                .delay(SLOW_QUERY_THRESHOLD * 2, TimeUnit.MILLISECONDS)
+                .flatMapCompletable(rows -> {
+                    rows.request(Long.MAX_VALUE);
+                    return Completable.timer(SLOW_QUERY_FLUSH_INTERVAL * 3, TimeUnit.MILLISECONDS);
+                })
+                .doFinally(() -> logger.removeHandler(handler))
+                .subscribe(() -> {
+                    ctx.verify(() -> assertTrue(warnings.stream().anyMatch(warning -> warning.contains(":slowStream"))));
+                    ctx.completeNow();
+                }, ctx::failNow);
+    }
+
+    @Test
+    public void connectionPoolMetrics(VertxTestContext ctx) {
+        JsonObject metrics = service.getConnectionPoolMetrics();
+        ctx.verify(() -> {
+            assertTrue(metrics.getInteger("total") > 0);
+            assertTrue(metrics.getJsonObject("acquire-time").getLong("count") > 0);
+        });
+        ctx.completeNow();
+    }
+
+    @Test
+    public void connectionPoolsAreNamedPerUnit(VertxTestContext ctx) {
+        Set<String> threads = Thread.getAllStackTraces().keySet().stream().map(Thread::getName).collect(Collectors.toSet());
+        ctx.verify(() -> {
+            assertTrue(threads.contains("hibernate-pool housekeeper"));
+            assertTrue(threads.contains("hibernate-pool-replica-0 housekeeper"));
+            assertTrue(threads.contains("hibernate-pool-shard-1 housekeeper"));
+        });
+        ctx.completeNow();
+    }
+
+    @Test
+    public void operationMetrics(VertxTestContext ctx) {
+        session.flush()
+                .doOnError(ctx::failNow)
+                .subscribe(() -> {
+                    JsonObject flush = service.metrics().getJsonObject("operations").getJsonObject("flush");
+                    ctx.verify(() -> {
+                        assertTrue(flush.getJsonObject("wait").getLong("count") > 0);
+                        assertTrue(flush.getJsonObject("execution").getLong("count") > 0);
+                    });
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void startupTimings(VertxTestContext ctx) {
+        JsonObject timings = service.getStartupTimings();
+        ctx.verify(() -> {
+            assertTrue(timings.containsKey("total"));
+            assertTrue(timings.getJsonObject("units").getJsonObject("test").containsKey("session-factory"));
+        });
+        ctx.completeNow();
+    }
+
+    @Test
+    public void readOnlySessionRejectsWrites(VertxTestContext ctx) {
+        service.createReadOnlySession()
+                .flatMap(readOnly -> readOnly.persist(new Mock("read-only"))
+                        .map(written -> false)
+                        .onErrorReturnItem(true)
+                        .flatMap(rejected -> readOnly.close().toSingleDefault(rejected)))
+                .doOnError(ctx::failNow)
+                .subscribe(rejected -> {
+                    ctx.verify(() -> assertTrue(rejected));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void eventBusSession(VertxTestContext ctx) {
+        HibernateEventBusSession client = new HibernateEventBusSession(io.vertx.reactivex.core.Vertx.newInstance(vertx), EVENT_BUS_ADDRESS);
+        Mock mock = new Mock("event-bus");
+
+        client.persist(mock)
+                .flatMapMaybe(persisted -> client.find(Mock.class, persisted.getId()))
+                .doOnError(ctx::failNow)
+                .subscribe(found -> {
+                    ctx.verify(() -> assertEquals(mock.getName(), found.getName()));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void eventBusSessionRemove(VertxTestContext ctx) {
+        HibernateEventBusSession client = new HibernateEventBusSession(io.vertx.reactivex.core.Vertx.newInstance(vertx), EVENT_BUS_ADDRESS);
+
+        client.persist(new Mock("event-bus-remove"))
+                .flatMap(client::remove)
+                .flatMap(removed -> client.find(Mock.class, removed.getId()).isEmpty())
+                .doOnError(ctx::failNow)
+                .subscribe(missing -> {
+                    ctx.verify(() -> assertTrue(missing));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void eventBusSessionRefresh(VertxTestContext ctx) {
+        HibernateEventBusSession client = new HibernateEventBusSession(io.vertx.reactivex.core.Vertx.newInstance(vertx), EVENT_BUS_ADDRESS);
+
+        client.persist(new Mock("event-bus-refresh"))
+                .flatMap(persisted -> client.execute(new HibernateQuery("UPDATE Mock m SET m.name = :name WHERE m.id = :id")
+                                .put("name", "event-bus-refreshed")
+                                .put("id", persisted.getId()))
+                        .flatMap(rows -> {
+                            Mock stale = new Mock(persisted.getId(), "stale");
+                            return client.refresh(stale).map(refreshed -> stale);
+                        }))
+                .doOnError(ctx::failNow)
+                .subscribe(refreshed -> {
+                    ctx.verify(() -> assertEquals("event-bus-refreshed", refreshed.getName()));
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void messageCodecWireFormat(VertxTestContext ctx) {
+        HibernateMessageCodec codec = new HibernateMessageCodec(session.getEm().getMetamodel());
+        HibernateMessage request = HibernateMessage.request(HibernateMessage.Action.MERGE)
+                .setEntityClass(Mock.class)
+                .setQuery(new HibernateQuery("SELECT m FROM Mock m WHERE m.name = :name").put("name", "wire").setTimeout(1000))
+                .setModel(new Mock(7L, "wire"));
+        Buffer wire = Buffer.buffer();
+        codec.encodeToWire(wire, request);
+
+        HibernateMessage decoded = codec.decodeFromWire(0, wire);
+        String foreignClass = "java.util.HashMap";
+        Buffer foreign = Buffer.buffer().appendByte((byte) 1).appendByte((byte) 0).appendInt(-1)
+                .appendByte((byte) 0).appendByte((byte) 0).appendByte((byte) 0)
+                .appendByte((byte) 26).appendInt(foreignClass.length()).appendString(foreignClass).appendInt(0);
+        ctx.verify(() -> {
+            assertEquals(HibernateMessage.Action.MERGE, decoded.getAction());
+            assertEquals(Mock.class, decoded.resolveEntityClass());
+            assertEquals(request.getQuery(), decoded.getQuery());
+            assertEquals(1000L, decoded.getQuery().getTimeout());
+            assertEquals(new Mock(7L, "wire"), decoded.getModel());
+            assertThrows(HibernateException.class, () -> codec.decodeFromWire(0, foreign));
+        });
+        ctx.completeNow();
+    }
+
+    /**
+     *  Runs action on test thread, so slow query log is flushed synchronously
+     */
+    private static HibernateExecutor createSlowQueryExecutor() {
+        return new HibernateExecutor(io.vertx.reactivex.core.Vertx.newInstance(vertx),
+                new JsonObject().put("worker-pool-name", "hibernate-slow-query-test"));
+    }
+
+    private static List<String> captureSlowQueryLog(Runnable action) {
+        java.util.logging.Logger logger = java.util.logging.Logger.getLogger(HibernateSlowQueryLog.class.getName());
+        List<String> messages = new CopyOnWriteArrayList<>();
+        Handler handler = collectTo(messages);
+        logger.addHandler(handler);
+        try {
+            action.run();
+        } finally {
+            logger.removeHandler(handler);
+        }
+        return messages;
+    }
+
+    private static Handler collectTo(List<String> messages) {
+        return new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                messages.add(String.valueOf(record.getMessage()));
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
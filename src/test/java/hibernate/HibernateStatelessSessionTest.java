@@ -0,0 +1,57 @@
+package hibernate;
+
+import hibernate.base.HibernateTestBase;
+import hibernate.impl.HibernateQuery;
+import hibernate.mock.Mock;
+import io.reactivex.Flowable;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@ExtendWith(VertxExtension.class)
+public class HibernateStatelessSessionTest extends HibernateTestBase {
+    private static final String DEFAULT_NAME = "$_name_$";
+
+    @Test
+    public void insertAndGet(VertxTestContext ctx) {
+        Mock mock = new Mock(DEFAULT_NAME);
+        service.createStatelessSession()
+                .flatMap(stateless -> stateless.insert(mock)
+                        .flatMapMaybe(m -> stateless.get(Mock.class, m.getId()))
+                        .toSingle()
+                        .flatMap(found -> stateless.close().toSingleDefault(found)))
+                .doOnError(ctx::failNow)
+                .subscribe(found -> {
+                    ctx.verify(() -> {
+                        assertNotNull(found.getId());
+                        assertEquals(mock.getId(), found.getId());
+                    });
+                    ctx.completeNow();
+                });
+    }
+
+    @Test
+    public void insertAllAndStream(VertxTestContext ctx) {
+        HibernateQuery query = new HibernateQuery("SELECT m FROM Mock m WHERE m.name = :name").put("name", DEFAULT_NAME);
+        Flowable<Mock> mocks = Flowable.range(0, 5).map(i -> new Mock(DEFAULT_NAME));
+
+        service.createStatelessSession()
+                .flatMap(stateless -> stateless.insertAll(mocks, 2)
+                        .toList()
+                        .flatMap(progress -> stateless.selectStream(query, Mock.class, 2)
+                                .count()
+                                .map(count -> Arrays.asList(progress.get(progress.size() - 1), count)))
+                        .flatMap(result -> stateless.close().toSingleDefault(result)))
+                .doOnError(ctx::failNow)
+                .subscribe(result -> {
+                    ctx.verify(() -> assertEquals(Arrays.asList(5L, 5L), result));
+                    ctx.completeNow();
+                });
+    }
+}
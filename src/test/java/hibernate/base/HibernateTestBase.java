@@ -10,6 +10,8 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 
+import java.util.function.UnaryOperator;
+
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SuppressWarnings("CheckReturnValue")
@@ -22,9 +24,20 @@ public abstract class HibernateTestBase {
 
     @BeforeAll
     public static void before(VertxTestContext ctx) {
+        startService(new JsonObject().put("persistence-unit", "test"), ctx);
+    }
+
+    /**
+     *  Test class of optional feature hides before() and starts service with config enabling that feature
+     */
+    protected static void startService(JsonObject serviceConfig, VertxTestContext ctx) {
+        startService(serviceConfig, UnaryOperator.identity(), ctx);
+    }
+
+    protected static void startService(JsonObject serviceConfig, UnaryOperator<HibernateService> setup, VertxTestContext ctx) {
         vertx = Vertx.vertx();
-        config = new JsonObject().put("persistence-unit", "test");
-        service = new HibernateService(vertx, config);
+        config = serviceConfig;
+        service = setup.apply(new HibernateService(vertx, config));
 
         service.start()
                 .andThen(service.createSession())